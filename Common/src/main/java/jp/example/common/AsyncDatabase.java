@@ -0,0 +1,227 @@
+package jp.example.common;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JDBC の非同期実行
+ * 問い合わせごとに仮想スレッドを起こして実行し、結果は CompletableFuture で返す。
+ * 同時に実行する問い合わせはコネクションプールの大きさまでに制限し、超えた分は仮想スレッド上で待たせる。
+ * 実行中と実行待ちを合わせた数にも上限を持ち、超えた問い合わせは RejectedExecutionException で
+ * 失敗させる（DBが止まっている間に処理を溜め込まない）。
+ * 結果の通知（thenAccept などの後続処理）は callbackExecutor で行うため、
+ * Paper ではメインスレッドを渡せばそのままワールドを操作できる。
+ * 呼び出し側のスレッドで接続や SQL の実行を待つことはない。
+ */
+public final class AsyncDatabase {
+
+    /** 接続を使う処理 */
+    @FunctionalInterface
+    public interface SqlFunction<T> {
+        T apply(Connection connection) throws SQLException;
+    }
+
+    /** PreparedStatement へのパラメータの設定 */
+    @FunctionalInterface
+    public interface Binder {
+        Binder NONE = statement -> { };
+
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+
+    /** 現在行の読み取り */
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T map(ResultSet row) throws SQLException;
+    }
+
+    /**
+     * MySQL Connector/J に PreparedStatement をコネクションごとにキャッシュさせる設定
+     * （HikariConfig#addDataSourceProperty に渡す）。同じ SQL 文字列は解析済みの文が再利用される。
+     */
+    public static Map<String, String> preparedStatementCacheProperties() {
+        return Map.of(
+            "cachePrepStmts", "true",
+            "prepStmtCacheSize", "64",
+            "prepStmtCacheSqlLimit", "2048",
+            "useServerPrepStmts", "true");
+    }
+
+    private final DataSource dataSource;
+    private final Executor callbackExecutor;
+    private final Semaphore permits;
+    private final int maxPending;
+    private final ExecutorService executor;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder completedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+    /**
+     * @param maxConcurrency   同時に実行する問い合わせの上限（コネクションプールの大きさ）
+     * @param maxPending       実行中・実行待ちを合わせた問い合わせの上限
+     * @param callbackExecutor 結果を通知するスレッド
+     */
+    public AsyncDatabase(DataSource dataSource, int maxConcurrency, int maxPending, Executor callbackExecutor) {
+        this.dataSource = dataSource;
+        this.callbackExecutor = callbackExecutor;
+        this.permits = new Semaphore(Math.max(1, maxConcurrency));
+        this.maxPending = Math.max(Math.max(1, maxConcurrency), maxPending);
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("bancontrol-db-", 0).factory());
+    }
+
+    /**
+     * 接続を1つ借りて work を実行する（同じ接続で複数の文を実行する場合に使う）
+     * SQLException などの例外は CompletionException として通知される。
+     * 実行待ちが上限に達している場合は RejectedExecutionException で失敗する。
+     */
+    public <T> CompletableFuture<T> withConnection(SqlFunction<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        if (inFlight.incrementAndGet() > maxPending) {
+            inFlight.decrementAndGet();
+            rejectedCount.increment();
+            deliver(result, null, new RejectedExecutionException("実行待ちの問い合わせが上限(" + maxPending + ")に達しています"));
+            return result;
+        }
+        try {
+            executor.execute(() -> run(work, result));
+        } catch (RejectedExecutionException e) {
+            // 停止後の呼び出し
+            inFlight.decrementAndGet();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * 先頭行を読み取る（行が無ければ空）
+     */
+    public <T> CompletableFuture<Optional<T>> queryOne(String sql, Binder binder, RowMapper<T> mapper) {
+        return withConnection(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                binder.bind(statement);
+                try (ResultSet row = statement.executeQuery()) {
+                    return row.next() ? Optional.ofNullable(mapper.map(row)) : Optional.<T>empty();
+                }
+            }
+        });
+    }
+
+    /**
+     * 更新系の文を実行し、更新行数を返す
+     */
+    public CompletableFuture<Integer> update(String sql, Binder binder) {
+        return withConnection(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                binder.bind(statement);
+                return statement.executeUpdate();
+            }
+        });
+    }
+
+    /** 実行中・実行待ちの問い合わせ数 */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /** 実行待ちの上限を超えて受け付けなかった問い合わせ数 */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /** 完了した問い合わせの平均所要時間（実行待ちを含む、ミリ秒） */
+    public double getAverageMillis() {
+        long count = completedCount.sum() + failedCount.sum();
+        return count == 0 ? 0.0 : totalNanos.sum() / 1_000_000.0 / count;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * 新しい問い合わせの受け付けを止め、実行中のものが終わるまで待つ
+     *
+     * @return 時間内にすべて完了したか
+     */
+    public boolean close(long timeout, TimeUnit unit) {
+        executor.shutdown();
+        try {
+            if (executor.awaitTermination(timeout, unit)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor.shutdownNow();
+        return false;
+    }
+
+    private <T> void run(SqlFunction<T> work, CompletableFuture<T> result) {
+        long start = System.nanoTime();
+        T value = null;
+        Throwable error = null;
+        try {
+            permits.acquire();
+            try (Connection connection = dataSource.getConnection()) {
+                value = work.apply(connection);
+            } finally {
+                permits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = e;
+        } catch (SQLException | RuntimeException e) {
+            error = e;
+        } finally {
+            inFlight.decrementAndGet();
+            long elapsed = System.nanoTime() - start;
+            totalNanos.add(elapsed);
+            maxNanos.accumulate(elapsed);
+        }
+        if (error != null) {
+            failedCount.increment();
+        } else {
+            completedCount.increment();
+        }
+        deliver(result, value, error);
+    }
+
+    // 後続処理が呼び出し元の想定するスレッドで動くよう、完了は callbackExecutor 上で行う
+    private <T> void deliver(CompletableFuture<T> result, T value, Throwable error) {
+        Runnable completion = error != null
+            ? () -> result.completeExceptionally(error)
+            : () -> result.complete(value);
+        try {
+            callbackExecutor.execute(completion);
+        } catch (RejectedExecutionException e) {
+            completion.run();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package jp.example.common;
+
+/**
+ * jigoku_time_response で返す地獄ワールドの時刻
+ */
+public final class JigokuTime {
+
+    /** 時刻の取得元 */
+    public enum Source {
+        CLOCK,     // 地獄サーバーからの観測値に基づく推定
+        DATABASE,  // MySQL の world_times
+        STALE,     // 許容鮮度を過ぎた推定値（他の取得方法が失敗した場合）
+        NONE       // 取得できなかった
+    }
+
+    private static final Source[] SOURCES = Source.values();
+
+    private final Source source;
+    private final long time;
+    private final boolean night;
+    private final long ageMillis;
+
+    public JigokuTime(Source source, long time, boolean night, long ageMillis) {
+        this.source = source;
+        this.time = time;
+        this.night = night;
+        this.ageMillis = ageMillis;
+    }
+
+    public static JigokuTime unavailable() {
+        return new JigokuTime(Source.NONE, 0L, false, -1L);
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    public boolean isAvailable() {
+        return source != Source.NONE;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public boolean isNight() {
+        return night;
+    }
+
+    /** 取得元の値の古さ（ミリ秒）。不明な場合は -1 */
+    public long getAgeMillis() {
+        return ageMillis;
+    }
+
+    public MessageEncoder write(MessageEncoder out) {
+        return out.writeVarInt(source.ordinal())
+            .writeVarLong(time)
+            .writeBoolean(night)
+            .writeVarLong(ageMillis + 1); // 不明(-1)を1バイトで送るためずらして書き込む
+    }
+
+    public static JigokuTime read(MessageDecoder in) {
+        int source = in.readVarInt();
+        if (source < 0 || source >= SOURCES.length) {
+            throw new ProtocolException("不明な時刻の取得元です: " + source);
+        }
+        return new JigokuTime(SOURCES[source], in.readVarLong(), in.readBoolean(), in.readVarLong() - 1);
+    }
+}
@@ -0,0 +1,126 @@
+package jp.example.common;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 送信メッセージの一括送信
+ * 宛先ごとに短い間（1tick 程度）メッセージを溜め、flush でまとめて1つの BATCH メッセージとして送る。
+ * 合成キー付きのメッセージは、同じ宛先・同じ種別・同じキーの未送信メッセージを置き換える
+ * （同じプレイヤーのゲームモード更新など、古い値に意味が無いもの）。
+ * add はどのスレッドからでも呼び出せる。flush の契機は利用側が決める（add が true を返したら予約する）。
+ *
+ * @param <T> 宛先（サーバー名など）
+ */
+public final class MessageBatcher<T> {
+
+    /** 実際の送信処理 */
+    @FunctionalInterface
+    public interface Sink<T> {
+        void send(T target, byte[] data);
+    }
+
+    /** BATCH メッセージ1件の最大バイト数（プラグインメッセージの上限 32766 バイトに収める） */
+    public static final int MAX_BATCH_BYTES = 32000;
+
+    private final Sink<T> sink;
+    private Map<T, Map<Object, byte[]>> pending = new LinkedHashMap<>();
+    private long batchedCount = 0;
+    private long coalescedCount = 0;
+
+    public MessageBatcher(Sink<T> sink) {
+        this.sink = sink;
+    }
+
+    // 合成キーは種別ごとに独立させる
+    private record CoalesceKey(int opcodeId, Object key) {
+    }
+
+    /**
+     * 送信待ちに追加する
+     *
+     * @param coalesceKey 置き換え対象を識別するキー（null の場合は置き換えない）
+     * @return 送信待ちが空の状態から追加した場合は true（利用側は flush を予約する）
+     */
+    public synchronized boolean add(T target, byte[] message, Object coalesceKey) {
+        boolean first = pending.isEmpty();
+        Map<Object, byte[]> queue = pending.computeIfAbsent(target, t -> new LinkedHashMap<>());
+        Object key = coalesceKey != null ? new CoalesceKey(message[2] & 0xFF, coalesceKey) : new Object();
+        // 置き換えたメッセージは最新の位置へ移す（送信順は最後の更新順）
+        if (queue.remove(key) != null) {
+            coalescedCount++;
+        }
+        queue.put(key, message);
+        return first;
+    }
+
+    /**
+     * 送信待ちのメッセージを宛先ごとにまとめて送る
+     */
+    public void flush() {
+        Map<T, Map<Object, byte[]>> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+        for (Map.Entry<T, Map<Object, byte[]>> entry : batch.entrySet()) {
+            send(entry.getKey(), new ArrayList<>(entry.getValue().values()));
+        }
+    }
+
+    public synchronized long getBatchedCount() {
+        return batchedCount;
+    }
+
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    // 上限を超えない範囲で BATCH に詰めて送る（1件だけの場合はそのまま送る）
+    private void send(T target, List<byte[]> messages) {
+        List<byte[]> frame = new ArrayList<>();
+        int frameBytes = Protocol.HEADER_SIZE + 5;
+        for (byte[] message : messages) {
+            int size = message.length + varIntSize(message.length);
+            if (!frame.isEmpty() && frameBytes + size > MAX_BATCH_BYTES) {
+                sendFrame(target, frame, frameBytes);
+                frame.clear();
+                frameBytes = Protocol.HEADER_SIZE + 5;
+            }
+            frame.add(message);
+            frameBytes += size;
+        }
+        if (!frame.isEmpty()) {
+            sendFrame(target, frame, frameBytes);
+        }
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private void sendFrame(T target, List<byte[]> frame, int expectedSize) {
+        if (frame.size() == 1) {
+            sink.send(target, frame.get(0));
+            return;
+        }
+        MessageEncoder out = MessageEncoder.of(Opcode.BATCH, expectedSize).writeVarInt(frame.size());
+        for (byte[] message : frame) {
+            out.writeByteArray(message);
+        }
+        synchronized (this) {
+            batchedCount += frame.size();
+        }
+        sink.send(target, out.toByteArray());
+    }
+}
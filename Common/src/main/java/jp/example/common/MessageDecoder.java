@@ -0,0 +1,134 @@
+package jp.example.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * バイナリメッセージの読み取り
+ * ヘッダーの検証は decode で行い、不正なデータや途中で切れたデータは ProtocolException とする。
+ */
+public final class MessageDecoder {
+
+    private final byte[] data;
+    private final Opcode opcode;
+    private final int opcodeId;
+    private int position;
+
+    private MessageDecoder(byte[] data, int opcodeId) {
+        this.data = data;
+        this.opcodeId = opcodeId;
+        this.opcode = Opcode.fromId(opcodeId);
+        this.position = Protocol.HEADER_SIZE;
+    }
+
+    /**
+     * ヘッダーを検証してデコーダーを返す
+     *
+     * @throws ProtocolException マジック・バージョンが一致しない場合
+     */
+    public static MessageDecoder decode(byte[] data) {
+        if (data == null || data.length < Protocol.HEADER_SIZE || (data[0] & 0xFF) != Protocol.MAGIC) {
+            throw new ProtocolException("bancontrol プロトコルのメッセージではありません");
+        }
+        int version = data[1] & 0xFF;
+        if (version != Protocol.VERSION) {
+            throw new ProtocolException(String.format("プロトコルバージョンが一致しません (受信: %d, 対応: %d)", version, Protocol.VERSION));
+        }
+        return new MessageDecoder(data, data[2] & 0xFF);
+    }
+
+    /** 種別（未知の ID の場合は null） */
+    public Opcode opcode() {
+        return opcode;
+    }
+
+    public int opcodeId() {
+        return opcodeId;
+    }
+
+    /**
+     * ヘッダーを含むメッセージ全体（転送用。内容を変更しないこと）
+     */
+    public byte[] rawMessage() {
+        return data;
+    }
+
+    public UUID readUuid() {
+        return new UUID(readLong(), readLong());
+    }
+
+    public boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    public int readVarInt() {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new ProtocolException("VarInt が長すぎます");
+    }
+
+    public long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new ProtocolException("VarLong が長すぎます");
+    }
+
+    public String readString() {
+        int length = readVarInt();
+        if (length < 0 || length > Protocol.MAX_STRING_BYTES) {
+            throw new ProtocolException("文字列の長さが不正です: " + length);
+        }
+        require(length);
+        String value = new String(data, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    public byte[] readByteArray() {
+        int length = readVarInt();
+        if (length < 0) {
+            throw new ProtocolException("バイト列の長さが不正です: " + length);
+        }
+        require(length);
+        byte[] bytes = new byte[length];
+        System.arraycopy(data, position, bytes, 0, length);
+        position += length;
+        return bytes;
+    }
+
+    public int remaining() {
+        return data.length - position;
+    }
+
+    private int readByte() {
+        require(1);
+        return data[position++] & 0xFF;
+    }
+
+    private long readLong() {
+        require(8);
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (data[position++] & 0xFF);
+        }
+        return value;
+    }
+
+    private void require(int bytes) {
+        if (data.length - position < bytes) {
+            throw new ProtocolException(String.format("メッセージが途中で切れています (opcode=%d)", opcodeId));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package jp.example.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * バイナリメッセージの組み立て
+ * UUID は16バイトの生データ、整数は可変長（LEB128）、文字列は長さ付き UTF-8 で書き込む。
+ */
+public final class MessageEncoder {
+
+    private byte[] buffer;
+    private int position;
+
+    private MessageEncoder(int capacity) {
+        this.buffer = new byte[Math.max(Protocol.HEADER_SIZE, capacity)];
+    }
+
+    /**
+     * ヘッダーを書き込んだエンコーダーを返す
+     */
+    public static MessageEncoder of(Opcode opcode) {
+        return of(opcode, 32);
+    }
+
+    public static MessageEncoder of(Opcode opcode, int expectedSize) {
+        MessageEncoder encoder = new MessageEncoder(expectedSize);
+        encoder.writeByte(Protocol.MAGIC);
+        encoder.writeByte(Protocol.VERSION);
+        encoder.writeByte(opcode.id());
+        return encoder;
+    }
+
+    public MessageEncoder writeUuid(UUID uuid) {
+        writeLong(uuid.getMostSignificantBits());
+        writeLong(uuid.getLeastSignificantBits());
+        return this;
+    }
+
+    public MessageEncoder writeBoolean(boolean value) {
+        writeByte(value ? 1 : 0);
+        return this;
+    }
+
+    public MessageEncoder writeVarInt(int value) {
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return this;
+    }
+
+    public MessageEncoder writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return this;
+    }
+
+    public MessageEncoder writeString(String value) {
+        byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Protocol.MAX_STRING_BYTES) {
+            throw new ProtocolException("文字列が長すぎます: " + bytes.length + " bytes");
+        }
+        writeVarInt(bytes.length);
+        writeBytes(bytes);
+        return this;
+    }
+
+    /**
+     * 長さ付きのバイト列（入れ子のメッセージなど）を書き込む
+     */
+    public MessageEncoder writeByteArray(byte[] bytes) {
+        writeVarInt(bytes.length);
+        writeBytes(bytes);
+        return this;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private void writeByte(int value) {
+        ensure(1);
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeLong(long value) {
+        ensure(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[position++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void writeBytes(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void ensure(int additional) {
+        if (position + additional > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + additional));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package jp.example.common;
+
+/**
+ * 受信メッセージの種別ごとのハンドラー表
+ * 起動時に register で登録し、受信時は opcode ID を添字とする配列から直接ハンドラーを引く
+ * （受信ごとの割り当てや文字列比較は行わない）。BATCH メッセージは展開して各要素を順に処理する。
+ * 登録は起動時の1スレッドからのみ行い、以降は読み取り専用として扱うこと。
+ *
+ * @param <C> ハンドラーに渡す受信時の文脈（受信したイベントやプレイヤーなど）
+ */
+public final class MessageHandlerRegistry<C> {
+
+    /** 1種別分の受信処理 */
+    @FunctionalInterface
+    public interface Handler<C> {
+        void handle(MessageDecoder in, C context);
+    }
+
+    private final Handler<C>[] handlers;
+    private Handler<C> unhandled;
+
+    @SuppressWarnings("unchecked")
+    public MessageHandlerRegistry() {
+        this.handlers = (Handler<C>[]) new Handler[256];
+    }
+
+    /**
+     * ハンドラーを登録する
+     *
+     * @throws IllegalStateException 同じ種別に既にハンドラーが登録されている場合
+     */
+    public MessageHandlerRegistry<C> register(Opcode opcode, Handler<C> handler) {
+        if (opcode == Opcode.BATCH) {
+            throw new IllegalArgumentException("BATCH はレジストリが展開するため登録できません");
+        }
+        if (handlers[opcode.id()] != null) {
+            throw new IllegalStateException("ハンドラーが重複して登録されています: " + opcode);
+        }
+        handlers[opcode.id()] = handler;
+        return this;
+    }
+
+    /**
+     * ハンドラーが登録されていない種別を受信したときの処理（ログ出力など）
+     */
+    public MessageHandlerRegistry<C> onUnhandled(Handler<C> handler) {
+        this.unhandled = handler;
+        return this;
+    }
+
+    public boolean isRegistered(Opcode opcode) {
+        return handlers[opcode.id()] != null;
+    }
+
+    /**
+     * 受信したメッセージを登録済みのハンドラーへ渡す
+     *
+     * @return ハンドラーが登録されていない種別の場合は false
+     */
+    public boolean dispatch(MessageDecoder in, C context) {
+        if (in.opcode() == Opcode.BATCH) {
+            dispatchBatch(in, context);
+            return true;
+        }
+        Handler<C> handler = handlers[in.opcodeId()];
+        if (handler == null) {
+            if (unhandled != null) {
+                unhandled.handle(in, context);
+            }
+            return false;
+        }
+        handler.handle(in, context);
+        return true;
+    }
+
+    // 1件の処理に失敗しても残りは処理し、最初の例外を最後に投げ直す
+    private void dispatchBatch(MessageDecoder in, C context) {
+        int count = in.readVarInt();
+        RuntimeException failure = null;
+        for (int i = 0; i < count; i++) {
+            MessageDecoder inner = MessageDecoder.decode(in.readByteArray());
+            if (inner.opcode() == Opcode.BATCH) {
+                throw new ProtocolException("BATCH の入れ子には対応していません");
+            }
+            try {
+                dispatch(inner, context);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
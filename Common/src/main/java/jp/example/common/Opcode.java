@@ -0,0 +1,60 @@
+package jp.example.common;
+
+/**
+ * myserver:bancontrol チャンネルのメッセージ種別
+ * ID はワイヤ上の1バイトとして送られるため、既存の値は変更・再利用しないこと。
+ * requestId は RequestTracker が割り当てる要求 ID（0 は応答不要）で、応答は同じ値を先頭に付けて返す。
+ */
+public enum Opcode {
+    // 現世/地獄 → プロキシ
+    JIGOKU_TRANSFER(1),        // uuid
+    GENSE_TRANSFER(2),         // uuid
+    ADMIN_JIGOKU_TRANSFER(3),  // uuid
+    ADMIN_GENSE_TRANSFER(4),   // uuid
+    GAMEMODE_UPDATE(5),        // uuid, gameMode
+    DEATH_NOTIFICATION(6),     // uuid, deathMessage, isDeathTransfer（プロキシから現世へも転送される）
+    NIGHT_LOGOUT(7),           // uuid, isDeathRelated
+    TIME_STATE(8),             // night
+    HEARTBEAT_RESPONSE(9),     // requestId, night, time
+    TIME_SYNC(10),             // time
+    QUERY_JIGOKU_TIME(11),     // requestId, uuid
+    // 12: 廃止（ゲームモード問い合わせへの応答）
+
+    // プロキシ → 現世/地獄
+    HEARTBEAT(32),             // requestId
+    DEATH_RESPAWN(33),         // uuid
+    DEATH(34),                 // uuid, deathMessage
+    // 35: 廃止（ゲームモード問い合わせ。ゲームモードは GAMEMODE_UPDATE で通知される）
+    JIGOKU_TIME_RESPONSE(36),  // requestId, uuid, JigokuTime
+
+    // 双方向
+    BATCH(64);                 // count, message[count]（各要素はヘッダー付きの完全なメッセージ。入れ子は不可）
+
+    private static final Opcode[] BY_ID = new Opcode[256];
+
+    static {
+        for (Opcode opcode : values()) {
+            if (BY_ID[opcode.id] != null) {
+                throw new IllegalStateException("Opcode ID が重複しています: " + opcode.id);
+            }
+            BY_ID[opcode.id] = opcode;
+        }
+    }
+
+    private final int id;
+
+    Opcode(int id) {
+        this.id = id;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    /**
+     * ID から種別を引く（未知の ID は null）
+     */
+    public static Opcode fromId(int id) {
+        return (id >= 0 && id < BY_ID.length) ? BY_ID[id] : null;
+    }
+}
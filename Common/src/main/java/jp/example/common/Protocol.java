@@ -0,0 +1,20 @@
+package jp.example.common;
+
+/**
+ * ワイヤプロトコルの定数
+ * 各メッセージは [MAGIC][VERSION][opcode] の3バイトのヘッダーで始まる。
+ * 互換性の無い変更を行う場合は VERSION を上げること（受信側はバージョン不一致のメッセージを拒否する）。
+ */
+public final class Protocol {
+
+    public static final String CHANNEL = "myserver:bancontrol";
+    public static final int MAGIC = 0xBC;
+    public static final int VERSION = 2;
+    public static final int HEADER_SIZE = 3;
+
+    /** 文字列フィールドの最大バイト数（UTF-8） */
+    public static final int MAX_STRING_BYTES = 32767;
+
+    private Protocol() {
+    }
+}
@@ -0,0 +1,11 @@
+package jp.example.common;
+
+/**
+ * 受信したメッセージがプロトコルに従っていない場合の例外
+ */
+public class ProtocolException extends RuntimeException {
+
+    public ProtocolException(String message) {
+        super(message);
+    }
+}
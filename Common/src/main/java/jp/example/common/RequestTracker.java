@@ -0,0 +1,112 @@
+package jp.example.common;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 要求と応答の対応付け
+ * 要求ごとに ID を割り当て、応答メッセージの先頭に入った同じ ID で CompletableFuture を完了させる。
+ * 時間内に応答が無い場合や送信できなかった場合は、要求時に指定したフォールバック値で完了する。
+ * ID 0 は「応答不要」を表すため割り当てない。どのスレッドからでも呼び出せる。
+ */
+public final class RequestTracker {
+
+    /** 応答待ちの要求 */
+    public static final class Call<R> {
+        private final int id;
+        private final Function<MessageDecoder, R> reader;
+        private final R fallback;
+        private final CompletableFuture<R> future = new CompletableFuture<>();
+
+        private Call(int id, Function<MessageDecoder, R> reader, R fallback) {
+            this.id = id;
+            this.reader = reader;
+            this.fallback = fallback;
+        }
+
+        /** 要求メッセージに書き込む ID */
+        public int id() {
+            return id;
+        }
+
+        /** 応答・タイムアウト・フォールバックのいずれかで完了する */
+        public CompletableFuture<R> future() {
+            return future;
+        }
+
+        private void complete(MessageDecoder in) {
+            try {
+                future.complete(reader.apply(in));
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        private void fallBack() {
+            future.complete(fallback);
+        }
+    }
+
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final Map<Integer, Call<?>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 応答待ちの要求を登録する
+     *
+     * @param reader        応答の本体（ID の後ろ）を読み取る処理
+     * @param fallback      タイムアウト・送信失敗時の値
+     * @param timeoutMillis 応答を待つ時間
+     */
+    public <R> Call<R> begin(Function<MessageDecoder, R> reader, R fallback, long timeoutMillis) {
+        int id;
+        do {
+            id = nextId.incrementAndGet();
+        } while (id == 0);
+        Call<R> call = new Call<>(id, reader, fallback);
+        pending.put(id, call);
+        int registeredId = id;
+        call.future.whenComplete((result, error) -> pending.remove(registeredId));
+        call.future.completeOnTimeout(fallback, timeoutMillis, TimeUnit.MILLISECONDS);
+        return call;
+    }
+
+    /**
+     * 応答を受け取った要求を完了させる
+     *
+     * @param in ID を読み取った直後のデコーダー
+     * @return 該当する要求が無い（期限切れ・重複応答など）場合は false
+     */
+    public boolean complete(int requestId, MessageDecoder in) {
+        Call<?> call = pending.remove(requestId);
+        if (call == null) {
+            return false;
+        }
+        call.complete(in);
+        return true;
+    }
+
+    /**
+     * 送信できなかった要求をフォールバック値ですぐに完了させる
+     */
+    public void abandon(Call<?> call) {
+        pending.remove(call.id);
+        call.fallBack();
+    }
+
+    /**
+     * 応答待ちの要求をすべてフォールバック値で完了させる（停止時）
+     */
+    public void abandonAll() {
+        for (Call<?> call : pending.values()) {
+            abandon(call);
+        }
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+}
@@ -1,4 +1,4 @@
-package jp.example.gense;
+package jp.example.common.paper;
 
 import net.william278.husksync.api.BukkitHuskSyncAPI;
 import net.william278.husksync.data.DataSnapshot;
@@ -9,7 +9,7 @@ import java.util.Optional;
 import java.util.logging.Level;
 
 /**
- * HuskSync APIとの統合を管理するクラス
+ * HuskSync APIとの統合を管理するクラス（地獄・現世の両プラグインで共用）
  */
 public class HuskSyncHook {
     
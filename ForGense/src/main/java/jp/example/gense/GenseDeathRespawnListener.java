@@ -15,9 +15,16 @@ import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.GameMode;
 
-import com.google.common.io.ByteArrayDataInput;
-import com.google.common.io.ByteArrayDataOutput;
-import com.google.common.io.ByteStreams;
+import jp.example.common.MessageDecoder;
+import jp.example.common.JigokuTime;
+import jp.example.common.MessageBatcher;
+import jp.example.common.MessageEncoder;
+import jp.example.common.MessageHandlerRegistry;
+import jp.example.common.Opcode;
+import jp.example.common.Protocol;
+import jp.example.common.ProtocolException;
+import jp.example.common.RequestTracker;
+import jp.example.common.paper.HuskSyncHook;
 
 import java.util.Collection;
 import java.util.Map;
@@ -28,15 +35,14 @@ import java.util.concurrent.ConcurrentHashMap;
 
 public class GenseDeathRespawnListener extends JavaPlugin implements PluginMessageListener, Listener, CommandExecutor {
 
-    private static final String CHANNEL = "myserver:bancontrol";
-    private static final String DEATH_RESPAWN_SUBCHANNEL = "death_respawn";
-    private static final String DEATH_SUBCHANNEL = "death";
-    private static final String QUERY_GAMEMODE_SUBCHANNEL = "query_gamemode";
-    private static final String GAMEMODE_RESPONSE_SUBCHANNEL = "gamemode_response";
-    private static final String JIGOKU_TRANSFER_SUBCHANNEL = "jigoku_transfer";
-    private static final String GAMEMODE_UPDATE_SUBCHANNEL = "gamemode_update";
+    private static final String CHANNEL = Protocol.CHANNEL;
     
     private HuskSyncHook huskSyncHook;
+    private final MessageHandlerRegistry<Player> messageHandlers = new MessageHandlerRegistry<>();
+    private final RequestTracker requests = new RequestTracker();
+    private long jigokuTimeTimeoutMillis;
+    // プロキシ宛てのゲームモード更新を1tick分まとめる（宛先はプロキシのみ）
+    private final MessageBatcher<String> proxyBatcher = new MessageBatcher<>((target, data) -> sendPluginMessage(data));
     private final Map<UUID, Long> jigokuCooldownMap = new ConcurrentHashMap<>();
     private long jigokuTransferCooldownMillis;
     private final Set<UUID> pendingPseudoDeaths = ConcurrentHashMap.newKeySet();
@@ -52,12 +58,15 @@ public class GenseDeathRespawnListener extends JavaPlugin implements PluginMessa
             cooldownSeconds = 0;
         }
         this.jigokuTransferCooldownMillis = cooldownSeconds * 1000L;
+        // プロキシ側の問い合わせ（MySQL・地獄サーバー）より長く待つ
+        this.jigokuTimeTimeoutMillis = Math.max(500L, getConfig().getLong("jigoku-time-timeout-millis", 5000L));
         if (jigokuTransferCooldownMillis > 0) {
             getLogger().info(String.format("Jigoku転送のクールダウンを %d 秒に設定しました。", cooldownSeconds));
         } else {
             getLogger().info("Jigoku転送のクールダウンは無効化されています。");
         }
         
+        registerMessageHandlers();
         registerChannels();
         getServer().getPluginManager().registerEvents(this, this);
         registerCommands();
@@ -77,6 +86,8 @@ public class GenseDeathRespawnListener extends JavaPlugin implements PluginMessa
 
     @Override
     public void onDisable() {
+        proxyBatcher.flush();
+        requests.abandonAll();
         getLogger().info("GenseDeathRespawnListenerが無効になりました。");
     }
 
@@ -85,33 +96,28 @@ public class GenseDeathRespawnListener extends JavaPlugin implements PluginMessa
         if (!CHANNEL.equals(channel)) return;
 
         try {
-            ByteArrayDataInput in = ByteStreams.newDataInput(message);
-            String subChannel = in.readUTF();
-            
-            handlePluginMessage(subChannel, in);
+            messageHandlers.dispatch(MessageDecoder.decode(message), player);
+        } catch (ProtocolException e) {
+            getLogger().warning("プラグインメッセージを解読できませんでした: " + e.getMessage());
         } catch (Exception e) {
             getLogger().log(Level.WARNING, "プラグインメッセージの処理中にエラーが発生しました", e);
         }
     }
 
-    private void handlePluginMessage(String subChannel, ByteArrayDataInput in) {
-        switch (subChannel) {
-            case DEATH_RESPAWN_SUBCHANNEL:
-                handleDeathRespawn(in);
-                break;
-            case DEATH_SUBCHANNEL:
-                handleDeathMessage(in);
-                break;
-            case QUERY_GAMEMODE_SUBCHANNEL:
-                handleGameModeQuery(in);
-                break;
-            default:
-                getLogger().warning("未知のサブチャンネル: " + subChannel);
-        }
+    // 受信メッセージのハンドラーを登録する（起動時に一度だけ）
+    private void registerMessageHandlers() {
+        messageHandlers
+            .register(Opcode.DEATH_RESPAWN, (in, carrier) -> handleDeathRespawn(in))
+            .register(Opcode.DEATH, (in, carrier) -> handleDeathMessage(in))
+            .register(Opcode.JIGOKU_TIME_RESPONSE, (in, carrier) -> completeRequest(in))
+            .onUnhandled((in, carrier) -> {
+                Opcode opcode = in.opcode();
+                getLogger().warning("未対応のメッセージ種別: " + (opcode != null ? opcode : "opcode=" + in.opcodeId()));
+            });
     }
 
-    private void handleDeathRespawn(ByteArrayDataInput in) {
-        UUID uuid = UUID.fromString(in.readUTF());
+    private void handleDeathRespawn(MessageDecoder in) {
+        UUID uuid = in.readUuid();
         Player targetPlayer = Bukkit.getPlayer(uuid);
         
         if (targetPlayer != null && targetPlayer.isOnline()) {
@@ -121,9 +127,9 @@ public class GenseDeathRespawnListener extends JavaPlugin implements PluginMessa
         }
     }
 
-    private void handleDeathMessage(ByteArrayDataInput in) {
-        UUID uuid = UUID.fromString(in.readUTF());
-        String deathMessage = in.readUTF();
+    private void handleDeathMessage(MessageDecoder in) {
+        UUID uuid = in.readUuid();
+        String deathMessage = in.readString();
         
         // 死亡メッセージをブロードキャスト
         String formattedMessage = formatDeathMessage(deathMessage);
@@ -134,27 +140,6 @@ public class GenseDeathRespawnListener extends JavaPlugin implements PluginMessa
         return "§c[地獄での死亡] " + deathMessage;
     }
 
-    private void handleGameModeQuery(ByteArrayDataInput in) {
-        UUID uuid = UUID.fromString(in.readUTF());
-        Player queriedPlayer = Bukkit.getPlayer(uuid);
-        
-        sendGameModeResponse(uuid, queriedPlayer);
-    }
-
-    private void sendGameModeResponse(UUID uuid, Player player) {
-        ByteArrayDataOutput out = ByteStreams.newDataOutput();
-        out.writeUTF(GAMEMODE_RESPONSE_SUBCHANNEL);
-        out.writeUTF(uuid.toString());
-        
-        if (player != null && player.isOnline()) {
-            out.writeUTF(player.getGameMode().name());
-        } else {
-            out.writeUTF("UNKNOWN");
-        }
-        
-        sendPluginMessage(out.toByteArray());
-    }
-
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
         if (!(sender instanceof Player)) {
@@ -201,10 +186,8 @@ public class GenseDeathRespawnListener extends JavaPlugin implements PluginMessa
         // HuskSyncでプレイヤーデータを保存してから転送
         huskSyncHook.savePlayerDataAndThen(player, () -> {
             // データ保存完了後にVelocityに転送リクエストを送信
-            ByteArrayDataOutput out = ByteStreams.newDataOutput();
-            out.writeUTF(JIGOKU_TRANSFER_SUBCHANNEL);
-            out.writeUTF(player.getUniqueId().toString());
-            player.sendPluginMessage(this, CHANNEL, out.toByteArray());
+            byte[] message = MessageEncoder.of(Opcode.JIGOKU_TRANSFER).writeUuid(player.getUniqueId()).toByteArray();
+            player.sendPluginMessage(this, CHANNEL, message);
             applyJigokuCooldown(player);
             if (jigokuTransferCooldownMillis > 0) {
                 player.sendMessage(String.format("§7次に地獄へ転送できるまで: %s", formatDuration(jigokuTransferCooldownMillis)));
@@ -220,10 +203,8 @@ public class GenseDeathRespawnListener extends JavaPlugin implements PluginMessa
         // HuskSyncでプレイヤーデータを保存してから転送
         huskSyncHook.savePlayerDataAndThen(player, () -> {
             // データ保存完了後にVelocityに転送リクエストを送信
-            ByteArrayDataOutput out = ByteStreams.newDataOutput();
-            out.writeUTF("admin_jigoku_transfer");
-            out.writeUTF(player.getUniqueId().toString());
-            player.sendPluginMessage(this, CHANNEL, out.toByteArray());
+            byte[] message = MessageEncoder.of(Opcode.ADMIN_JIGOKU_TRANSFER).writeUuid(player.getUniqueId()).toByteArray();
+            player.sendPluginMessage(this, CHANNEL, message);
             
             getLogger().info("HuskSyncデータ保存完了後、管理者地獄転送を実行: " + player.getName());
         });
@@ -231,11 +212,83 @@ public class GenseDeathRespawnListener extends JavaPlugin implements PluginMessa
     }
 
     private void requestJigokuTime(Player player) {
-        ByteArrayDataOutput out = ByteStreams.newDataOutput();
-        out.writeUTF("query_jigoku_time");
-        out.writeUTF(player.getUniqueId().toString());
-        player.sendPluginMessage(this, CHANNEL, out.toByteArray());
+        UUID uuid = player.getUniqueId();
+        // 応答が無い場合は null で完了する
+        RequestTracker.Call<JigokuTime> call = requests.begin(in -> {
+            in.readUuid();
+            return JigokuTime.read(in);
+        }, null, jigokuTimeTimeoutMillis);
+        byte[] message = MessageEncoder.of(Opcode.QUERY_JIGOKU_TIME).writeVarInt(call.id()).writeUuid(uuid).toByteArray();
+        player.sendPluginMessage(this, CHANNEL, message);
         player.sendMessage("§e地獄ワールドの時刻を確認中...");
+
+        // 応答・タイムアウトは別スレッドで完了することがあるため、メインスレッドで表示する
+        call.future().whenComplete((time, error) -> {
+            if (!isEnabled()) {
+                return;
+            }
+            Bukkit.getScheduler().runTask(this, () -> {
+                Player target = Bukkit.getPlayer(uuid);
+                if (target == null) {
+                    return;
+                }
+                if (error != null) {
+                    getLogger().log(Level.WARNING, "地獄ワールドの時刻応答を処理できませんでした", error);
+                    target.sendMessage("§c地獄ワールドの時刻を取得できませんでした。");
+                } else {
+                    showJigokuTime(target, time);
+                }
+            });
+        });
+    }
+
+    private void completeRequest(MessageDecoder in) {
+        int requestId = in.readVarInt();
+        if (!requests.complete(requestId, in)) {
+            getLogger().fine("応答待ちではない要求への応答を受信しました: requestId=" + requestId);
+        }
+    }
+
+    private void showJigokuTime(Player player, JigokuTime time) {
+        if (time == null) {
+            player.sendMessage("§cプロキシから応答がありませんでした。しばらくしてからもう一度お試しください。");
+            return;
+        }
+        if (!time.isAvailable()) {
+            player.sendMessage("§c地獄ワールドの時刻を取得できませんでした（地獄サーバーにプレイヤーがいない可能性があります）。");
+            return;
+        }
+        boolean fromDatabase = time.getSource() == JigokuTime.Source.DATABASE;
+        boolean isNight = time.isNight();
+        long normalizedTime = time.getTime() % 24000;
+        
+        player.sendMessage("§6=== 地獄ワールドの時刻情報 ===");
+        player.sendMessage(String.format("§e現在時刻: §f%d §7/ 24000", normalizedTime));
+        if (fromDatabase) {
+            player.sendMessage(String.format("§e時間帯: %s §7(DB: %s)", isNight ? "§c夜" : "§a昼", isNight ? "夜" : "昼"));
+        } else {
+            player.sendMessage(String.format("§e時間帯: %s", isNight ? "§c夜" : "§a昼"));
+        }
+        
+        if (isNight) {
+            long ticksUntilDay = 23000 - normalizedTime;
+            long secondsUntilDay = ticksUntilDay / 20;
+            player.sendMessage(String.format("§e朝まで: §f%d秒 §7(%dティック)", secondsUntilDay, ticksUntilDay));
+            player.sendMessage("§c※ 夜間はサーバー移動ができません！");
+        } else {
+            long ticksUntilNight = 13000 - normalizedTime;
+            if (ticksUntilNight < 0) ticksUntilNight += 24000;
+            long secondsUntilNight = ticksUntilNight / 20;
+            player.sendMessage(String.format("§e夜まで: §f%d秒 §7(%dティック)", secondsUntilNight, ticksUntilNight));
+            player.sendMessage("§a※ 昼間はサーバー移動可能です");
+        }
+        
+        // 取得元の値の古さを表示
+        if (fromDatabase && time.getAgeMillis() >= 0) {
+            player.sendMessage(String.format("§7最終更新: %d秒前", time.getAgeMillis() / 1000));
+        } else if (time.getSource() == JigokuTime.Source.STALE) {
+            player.sendMessage("§7※ 最新の時刻を取得できなかったため、推定値を表示しています");
+        }
     }
 
     @EventHandler
@@ -251,12 +304,15 @@ public class GenseDeathRespawnListener extends JavaPlugin implements PluginMessa
     }
 
     private void sendGameModeUpdate(Player player) {
-        ByteArrayDataOutput out = ByteStreams.newDataOutput();
-        out.writeUTF(GAMEMODE_UPDATE_SUBCHANNEL);
-        out.writeUTF(player.getUniqueId().toString());
-        out.writeUTF(player.getGameMode().name());
+        byte[] message = MessageEncoder.of(Opcode.GAMEMODE_UPDATE)
+            .writeUuid(player.getUniqueId())
+            .writeString(player.getGameMode().name())
+            .toByteArray();
         
-        sendPluginMessage(out.toByteArray());
+        // 同じtick内の同じプレイヤーの更新は最新のもののみ送る
+        if (proxyBatcher.add(CHANNEL, message, player.getUniqueId())) {
+            Bukkit.getScheduler().runTask(this, proxyBatcher::flush);
+        }
     }
 
     private void sendPluginMessage(byte[] data) {
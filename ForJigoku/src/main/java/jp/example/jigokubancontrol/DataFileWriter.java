@@ -0,0 +1,115 @@
+package jp.example.jigokubancontrol;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * データファイルの遅延一括保存
+ * 変更は dirty フラグを立てるだけで、一定間隔ごとにメインスレッドでスナップショットを取り、
+ * 書き込みは専用スレッドで一時ファイル経由のアトミックな置き換えで行う。
+ * markDirty / flush はメインスレッドから呼び出す。
+ */
+public class DataFileWriter {
+
+    /** メインスレッドで取得した、書き込みスレッドで文字列化できる状態のコピー */
+    public interface Snapshot {
+        String render();
+    }
+
+    private final JavaPlugin plugin;
+    private final Path file;
+    private final long intervalTicks;
+    private final Supplier<Snapshot> snapshotter;
+    private final ExecutorService executor;
+    private boolean dirty = false;
+    private boolean scheduled = false;
+
+    public DataFileWriter(JavaPlugin plugin, File file, long intervalTicks, Supplier<Snapshot> snapshotter) {
+        this.plugin = plugin;
+        this.file = file.toPath();
+        this.intervalTicks = Math.max(1L, intervalTicks);
+        this.snapshotter = snapshotter;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "JigokuBanControl-DataWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 保存が必要なことを記録する（次の保存タイミングでまとめて書き込む）
+     */
+    public void markDirty() {
+        dirty = true;
+        if (!scheduled && plugin.isEnabled()) {
+            scheduled = true;
+            Bukkit.getScheduler().runTaskLater(plugin, this::flushAsync, intervalTicks);
+        }
+    }
+
+    private void flushAsync() {
+        scheduled = false;
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        Snapshot snapshot = snapshotter.get();
+        try {
+            executor.execute(() -> write(snapshot));
+        } catch (RejectedExecutionException e) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * 未保存の変更を書き出し、書き込みスレッドを停止する（onDisable 用）
+     */
+    public void flush() {
+        if (dirty) {
+            dirty = false;
+            Snapshot snapshot = snapshotter.get();
+            try {
+                executor.execute(() -> write(snapshot));
+            } catch (RejectedExecutionException e) {
+                write(snapshot);
+            }
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning(file.getFileName() + " の書き込みが時間内に完了しませんでした。");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(Snapshot snapshot) {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.writeString(tmp, snapshot.render(), StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, file.getFileName() + " の保存に失敗しました。", e);
+            // 次の保存タイミングで再試行する
+            if (plugin.isEnabled()) {
+                Bukkit.getScheduler().runTask(plugin, this::markDirty);
+            }
+        }
+    }
+}
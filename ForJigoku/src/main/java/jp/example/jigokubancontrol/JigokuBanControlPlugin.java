@@ -26,11 +26,11 @@ import java.util.Set;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
 import com.google.common.io.ByteArrayDataOutput;
 import com.google.common.io.ByteStreams;
-import com.google.common.io.ByteArrayDataInput;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.plugin.messaging.PluginMessageListener;
 
@@ -38,35 +38,68 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.sql.*;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import jp.example.common.AsyncDatabase;
+import jp.example.common.MessageDecoder;
+import jp.example.common.MessageEncoder;
+import jp.example.common.MessageHandlerRegistry;
+import jp.example.common.Opcode;
+import jp.example.common.Protocol;
+import jp.example.common.ProtocolException;
+import jp.example.common.paper.HuskSyncHook;
 
 public class JigokuBanControlPlugin extends JavaPlugin implements Listener, PluginMessageListener, CommandExecutor {
 
-    private static final String CHANNEL = "myserver:bancontrol";
+    private static final String CHANNEL = Protocol.CHANNEL;
     private static final String BUNGEECORD_CHANNEL = "BungeeCord";
     private static final long DAY_TIME = 24000L;
     private static final long NIGHT_START = 13000L;  // 12000L から 13000L に変更
     private static final long NIGHT_END = 23000L;    // 24000L から 23000L に変更
     private static final int TIME_CHECK_INTERVAL = 100; // 5秒 (100 ticks)
-    private static final long PENDING_MESSAGE_EXPIRE_TIME = 86400000L; // 24時間
     private static final double WORLD_BORDER_MARGIN = 32.0; // ワールドボーダーからの安全マージン
+    private static final int MAX_ASYNC_SPAWN_ATTEMPTS = 20; // プールが空の時の非同期探索の試行回数
+    private static final int MAX_FORCED_SPAWN_ATTEMPTS = 3; // 非同期探索が失敗した時に読み込み済みチャンクで試す回数
     
-    private final Set<UUID> deadPlayers = new HashSet<>();
-    private final Set<UUID> joinedPlayers = new HashSet<>();
+    private PlayerRegistry playerRegistry;
+    private NightLogoutOutbox nightLogoutOutbox;
+    private PluginMessageOutbox messageOutbox;
+    private int outboxMaxQueued = 1000;
+    private boolean outboxSpillToDisk = true;
+    private int outboxMaxSpilled = 10000;
+    private long outboxFlushIntervalTicks = 100L;
+    private long outboxTimeMessageTtlMillis = 10_000L;
+    private long nightLogoutTtlMillis = 86400000L; // 保留中の夜間ログアウト通知の保存期間（24時間）
     private final Set<UUID> recentlyDiedPlayers = new HashSet<>(); // 最近死亡したプレイヤーを追跡
     private File dataFile;
     private FileConfiguration dataConfig;
+    private DataFileWriter dataWriter;
+    private long dataSaveIntervalTicks = 200L; // data.yml の保存間隔
     private final Random random = new Random();
     private int spawnRangeMin = 5000; // 最小スポーン距離
     private int spawnRangeMax = 20000; // 最大スポーン距離
     private boolean regularJoinTeleport = true; // 通常参加時のランダムテレポート有効/無効
     private boolean wasNight = false; // 最後にチェックした時の夜かどうかを保持
+    private long timeSyncIntervalTicks = 1200L; // プロキシへの時刻補正送信間隔
+    private boolean mysqlTimeSinkEnabled = true; // MySQLへの時刻書き込み（永続化用）
+    private long mysqlTimeWriteIntervalTicks = 1200L; // MySQLへの時刻書き込み間隔
+    private long ticksSinceTimeSync = Long.MAX_VALUE / 2;
+    private long ticksSinceMysqlWrite = Long.MAX_VALUE / 2;
     private HikariDataSource dataSource;
+    private AsyncDatabase database;
+    private WorldTimeWriter worldTimeWriter;
     private boolean mysqlEnabled = false;
     private HuskSyncHook huskSyncHook;
+    private final MessageHandlerRegistry<Player> messageHandlers = new MessageHandlerRegistry<>();
     private boolean spawnRangeWarningLogged = false;
+    private int spawnPoolTargetSize = 10; // 事前確保するスポーン地点の数
+    private int spawnPoolLowWaterMark = 3; // この数以下になったら補充を開始
+    private SpawnSafety spawnSafety;
+    private SafeSpawnSearcher spawnSearcher;
+    private SafeSpawnPool spawnPool;
+    private SpawnRegionCache spawnCache;
+    private boolean spawnCacheEnabled = true;
+    private int spawnCacheMaxEntries = 8192;
 
     private boolean isNight(World world) {
         long time = world.getTime();
@@ -78,6 +111,7 @@ public class JigokuBanControlPlugin extends JavaPlugin implements Listener, Plug
         // 設定ファイルをロード
         saveDefaultConfig();
         loadConfiguration();
+        spawnSafety = new SpawnSafety(getConfig().getConfigurationSection("spawn-safety"), getLogger());
 
         // MySQL接続を初期化
         initializeMySQL();
@@ -110,8 +144,40 @@ public class JigokuBanControlPlugin extends JavaPlugin implements Listener, Plug
         setupDataFile();
         loadData();
 
+        // プロキシ宛てメッセージの送信キュー
+        initializeMessageOutbox();
+
         // 昼夜監視タスクを開始
         startDayNightMonitor();
+
+        // スポーン地点プールの補充を開始
+        initializeSpawnPool();
+    }
+
+    private void initializeMessageOutbox() {
+        messageOutbox = new PluginMessageOutbox(this, CHANNEL, outboxMaxQueued, outboxSpillToDisk, outboxMaxSpilled);
+        messageOutbox.load();
+        // 送信経路となるプレイヤーがいなかった間のメッセージを定期的に送信
+        getServer().getScheduler().runTaskTimer(this, messageOutbox::tick, outboxFlushIntervalTicks, outboxFlushIntervalTicks);
+    }
+
+    private void initializeSpawnPool() {
+        World world = getMainWorld();
+        if (world != null && spawnCacheEnabled) {
+            spawnCache = new SpawnRegionCache(this, world, spawnCacheMaxEntries);
+            spawnCache.load();
+            Bukkit.getPluginManager().registerEvents(spawnCache, this);
+        }
+        spawnSearcher = new SafeSpawnSearcher(this, spawnSafety, spawnCache);
+        if (world == null) {
+            return;
+        }
+        spawnPool = new SafeSpawnPool(this, world,
+            this::pickRandomCoordinatesWithinBorder,
+            spawnSearcher,
+            this::isStillSafeSpawn,
+            spawnPoolTargetSize, spawnPoolLowWaterMark);
+        spawnPool.refill();
     }
 
     private void loadConfiguration() {
@@ -119,6 +185,20 @@ public class JigokuBanControlPlugin extends JavaPlugin implements Listener, Plug
         spawnRangeMin = config.getInt("spawn-range-min", 5000);
         spawnRangeMax = config.getInt("spawn-range-max", 20000);
         regularJoinTeleport = config.getBoolean("regular-join-teleport", true);
+        timeSyncIntervalTicks = Math.max(TIME_CHECK_INTERVAL, config.getLong("time-replication.sync-interval-seconds", 60L) * 20L);
+        mysqlTimeSinkEnabled = config.getBoolean("time-replication.mysql-sink", true);
+        spawnPoolTargetSize = Math.max(1, config.getInt("spawn-pool.target-size", 10));
+        spawnPoolLowWaterMark = Math.max(0, config.getInt("spawn-pool.low-water-mark", 3));
+        outboxMaxQueued = Math.max(1, config.getInt("outbox.max-queued", 1000));
+        outboxSpillToDisk = config.getBoolean("outbox.spill-to-disk", true);
+        outboxMaxSpilled = Math.max(0, config.getInt("outbox.max-spilled", 10000));
+        outboxFlushIntervalTicks = Math.max(1L, config.getLong("outbox.flush-interval-seconds", 5L)) * 20L;
+        outboxTimeMessageTtlMillis = Math.max(1L, config.getLong("outbox.time-message-ttl-seconds", 10L)) * 1000L;
+        nightLogoutTtlMillis = Math.max(1L, config.getLong("night-logout-ttl-hours", 24L)) * 3600000L;
+        dataSaveIntervalTicks = Math.max(1L, config.getLong("data-save-interval-seconds", 10L)) * 20L;
+        spawnCacheEnabled = config.getBoolean("spawn-cache.enabled", true);
+        spawnCacheMaxEntries = Math.max(1, config.getInt("spawn-cache.max-entries", 8192));
+        mysqlTimeWriteIntervalTicks = Math.max(TIME_CHECK_INTERVAL, config.getLong("time-replication.mysql-write-interval-seconds", 60L) * 20L);
         
         // 設定値の検証
         if (spawnRangeMin < 0 || spawnRangeMax < spawnRangeMin) {
@@ -129,6 +209,10 @@ public class JigokuBanControlPlugin extends JavaPlugin implements Listener, Plug
     }
 
     private void registerChannels() {
+        // ハートビートには応答を返す
+        messageHandlers
+            .register(Opcode.HEARTBEAT, (in, carrier) -> sendHeartbeatResponse(in.readVarInt()))
+            .onUnhandled((in, carrier) -> getLogger().fine("未対応のメッセージ種別を受信しました: opcode=" + in.opcodeId()));
         Bukkit.getMessenger().registerOutgoingPluginChannel(this, CHANNEL);
         Bukkit.getMessenger().registerOutgoingPluginChannel(this, BUNGEECORD_CHANNEL);
         Bukkit.getMessenger().registerIncomingPluginChannel(this, CHANNEL, this);
@@ -156,21 +240,30 @@ public class JigokuBanControlPlugin extends JavaPlugin implements Listener, Plug
 
     private void checkAndUpdateTimeState(World world) {
         boolean isCurrentlyNight = isNight(world);
-        
-        // MySQLに時刻情報を更新
-        if (mysqlEnabled) {
-            updateWorldTime(world.getName(), world.getTime(), isCurrentlyNight);
-        }
+        boolean transition = isCurrentlyNight != wasNight;
+        ticksSinceTimeSync += TIME_CHECK_INTERVAL;
+        ticksSinceMysqlWrite += TIME_CHECK_INTERVAL;
         
         // 昼夜の変化を検出
-        if (isCurrentlyNight != wasNight) {
-            String state = isCurrentlyNight ? "jigoku_night" : "jigoku_day";
-            sendTimeStateToProxy(state);
+        if (transition) {
+            sendTimeStateToProxy(isCurrentlyNight);
             wasNight = isCurrentlyNight;
             
             // プレイヤーへの通知
             notifyPlayersOfTimeChange(isCurrentlyNight);
         }
+
+        // プロキシへは切り替え時と定期的なずれ補正のみ時刻を送信（プロキシ側の時計モデルが補間する）
+        if (transition || ticksSinceTimeSync >= timeSyncIntervalTicks) {
+            sendTimeSyncToProxy(world.getTime());
+            ticksSinceTimeSync = 0;
+        }
+        
+        // MySQLは永続化用。切り替え時と一定間隔でのみ書き込む
+        if (mysqlEnabled && mysqlTimeSinkEnabled && (transition || ticksSinceMysqlWrite >= mysqlTimeWriteIntervalTicks)) {
+            updateWorldTime(world.getName(), world.getTime(), isCurrentlyNight);
+            ticksSinceMysqlWrite = 0;
+        }
     }
 
     private void notifyPlayersOfTimeChange(boolean isNight) {
@@ -219,11 +312,15 @@ public class JigokuBanControlPlugin extends JavaPlugin implements Listener, Plug
                 hikariConfig.setMaxLifetime(config.getLong("mysql.max_lifetime", 1800000L));
                 hikariConfig.setConnectionTestQuery("SELECT 1");
                 hikariConfig.setPoolName("JigokuBanControl-MySQL-Pool");
+                AsyncDatabase.preparedStatementCacheProperties().forEach(hikariConfig::addDataSourceProperty);
                 
                 dataSource = new HikariDataSource(hikariConfig);
+                // 問い合わせは仮想スレッドで実行し、結果はメインスレッドで受け取る
+                this.database = new AsyncDatabase(dataSource, hikariConfig.getMaximumPoolSize(),
+                        config.getInt("mysql.max_pending_queries", 256), this::runOnMainThread);
                 mysqlEnabled = true;
 
-                // テーブルを作成
+                // テーブルを作成してから書き込みを開始する
                 createWorldTimeTable();
                 getLogger().info("MySQL接続プール(HikariCP)を初期化しました。");
             } catch (Exception e) {
@@ -234,41 +331,70 @@ public class JigokuBanControlPlugin extends JavaPlugin implements Listener, Plug
     }
 
     private void createWorldTimeTable() {
-        try (Connection conn = dataSource.getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(
-                "CREATE TABLE IF NOT EXISTS world_times (" +
-                "world_name VARCHAR(64) PRIMARY KEY," +
-                "time BIGINT NOT NULL," +
-                "is_night BOOLEAN NOT NULL," +
-                "last_update TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP" +
-                ")"
-            );
-        } catch (SQLException e) {
-            getLogger().log(Level.SEVERE, "world_timesテーブルの作成に失敗しました。", e);
+        database.update(
+            "CREATE TABLE IF NOT EXISTS world_times (" +
+            "world_name VARCHAR(64) PRIMARY KEY," +
+            "time BIGINT NOT NULL," +
+            "is_night BOOLEAN NOT NULL," +
+            "last_update TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP" +
+            ")", AsyncDatabase.Binder.NONE
+        ).whenComplete((ignored, error) -> {
+            if (error != null) {
+                getLogger().log(Level.SEVERE, "world_timesテーブルの作成に失敗しました。", error);
+            }
+            // 作成に失敗した場合も、既存のテーブルがあれば書き込めるため開始する
+            if (isEnabled() && worldTimeWriter == null) {
+                worldTimeWriter = new WorldTimeWriter(this, database);
+            }
+        });
+    }
+
+    // AsyncDatabase の結果通知先（停止処理中はその場で実行する）
+    private void runOnMainThread(Runnable task) {
+        if (isEnabled()) {
+            Bukkit.getScheduler().runTask(this, task);
+        } else {
+            task.run();
         }
     }
 
     private void updateWorldTime(String worldName, long time, boolean isNight) {
-        if (!mysqlEnabled) return;
+        if (!mysqlEnabled || worldTimeWriter == null) return;
         
-        try (Connection conn = dataSource.getConnection()) {
-            String query = "INSERT INTO world_times (world_name, time, is_night) VALUES (?, ?, ?) " +
-                          "ON DUPLICATE KEY UPDATE time = VALUES(time), is_night = VALUES(is_night)";
-            try (PreparedStatement stmt = conn.prepareStatement(query)) {
-                stmt.setString(1, "jigoku"); // 常に"jigoku"として保存
-                stmt.setLong(2, time);
-                stmt.setBoolean(3, isNight);
-                stmt.executeUpdate();
-            }
-        } catch (SQLException e) {
-            getLogger().log(Level.WARNING, "MySQLへの時刻情報の更新に失敗しました。HikariCPが自動的に再接続を試みます。", e);
-        }
+        // 書き込みは専用スレッドで行う（常に"jigoku"として保存）
+        worldTimeWriter.submit("jigoku", time, isNight);
     }
 
     @Override
     public void onDisable() {
-        saveData();
+        if (spawnPool != null) {
+            spawnPool.clear();
+        }
+        if (messageOutbox != null) {
+            messageOutbox.flush(null);
+            messageOutbox.shutdown();
+        }
+        if (dataWriter != null) {
+            dataWriter.flush();
+        }
+        if (playerRegistry != null) {
+            playerRegistry.close();
+        }
+        if (nightLogoutOutbox != null) {
+            nightLogoutOutbox.close();
+        }
+        if (spawnCache != null) {
+            spawnCache.save();
+        }
+        if (worldTimeWriter != null) {
+            worldTimeWriter.flush();
+        }
+        if (database != null && !database.close(5, TimeUnit.SECONDS)) {
+            getLogger().warning("MySQLへの書き込みが時間内に完了しなかったため中断しました。");
+        }
+        if (worldTimeWriter != null) {
+            worldTimeWriter.logStats();
+        }
         if (dataSource != null && !dataSource.isClosed()) {
             dataSource.close();
             getLogger().info("MySQL接続プール(HikariCP)を正常にクローズしました");
@@ -288,42 +414,72 @@ public class JigokuBanControlPlugin extends JavaPlugin implements Listener, Plug
             }
         }
         dataConfig = YamlConfiguration.loadConfiguration(dataFile);
+        dataWriter = new DataFileWriter(this, dataFile, dataSaveIntervalTicks, this::snapshotData);
     }
 
     private void loadData() {
-        List<String> deadUuids = dataConfig.getStringList("dead-players");
-        for (String uuidString : deadUuids) {
-            try {
-                deadPlayers.add(UUID.fromString(uuidString));
-            } catch (IllegalArgumentException e) {
-                getLogger().warning("無効なUUID文字列をdata.ymlから読み込みました: " + uuidString);
-            }
+        loadPlayerRegistry();
+        loadNightLogoutOutbox();
+    }
+
+    private void loadPlayerRegistry() {
+        playerRegistry = new PlayerRegistry(getDataFolder(), getLogger());
+        if (playerRegistry.exists() || !(dataConfig.contains("joined-players") || dataConfig.contains("dead-players"))) {
+            playerRegistry.load();
+            return;
         }
-        List<String> joinedUuids = dataConfig.getStringList("joined-players");
-        for (String uuidString : joinedUuids) {
+        // 旧形式（data.yml の文字列リスト）から移行する
+        playerRegistry.importLegacy(readUuidList("joined-players"), readUuidList("dead-players"));
+        dataConfig.set("joined-players", null);
+        dataConfig.set("dead-players", null);
+        saveData();
+    }
+
+    private void loadNightLogoutOutbox() {
+        nightLogoutOutbox = new NightLogoutOutbox(getDataFolder(), getLogger(), nightLogoutTtlMillis);
+        if (nightLogoutOutbox.exists() || !dataConfig.contains("pending-night-logouts")) {
+            nightLogoutOutbox.load();
+            return;
+        }
+        // 旧形式（data.yml の動的キー）から移行する
+        List<NightLogoutOutbox.Entry> legacy = new ArrayList<>();
+        for (UUID uuid : readUuidList("pending-night-logouts")) {
+            legacy.add(NightLogoutOutbox.legacyEntry(uuid,
+                dataConfig.getString("pending-night-logout-name." + uuid),
+                dataConfig.getLong("pending-night-logout-time." + uuid)));
+        }
+        nightLogoutOutbox.importLegacy(legacy);
+        dataConfig.set("pending-night-logouts", null);
+        dataConfig.set("pending-night-logout-time", null);
+        dataConfig.set("pending-night-logout-name", null);
+        saveData();
+    }
+
+    private List<UUID> readUuidList(String path) {
+        List<UUID> uuids = new ArrayList<>();
+        for (String uuidString : dataConfig.getStringList(path)) {
             try {
-                joinedPlayers.add(UUID.fromString(uuidString));
+                uuids.add(UUID.fromString(uuidString));
             } catch (IllegalArgumentException e) {
                 getLogger().warning("無効なUUID文字列をdata.ymlから読み込みました: " + uuidString);
             }
         }
+        return uuids;
     }
 
+    // 変更を記録し、一定間隔でまとめて非同期に保存する
     private void saveData() {
-        if (dataConfig == null || dataFile == null) {
-            return;
-        }
-        List<String> deadUuidStrings = deadPlayers.stream().map(UUID::toString).collect(Collectors.toList());
-        dataConfig.set("dead-players", deadUuidStrings);
-        List<String> joinedUuidStrings = joinedPlayers.stream().map(UUID::toString).collect(Collectors.toList());
-        dataConfig.set("joined-players", joinedUuidStrings);
-        try {
-            dataConfig.save(dataFile);
-        } catch (IOException e) {
-            getLogger().log(Level.SEVERE, "data.ymlの保存に失敗しました。", e);
+        if (dataWriter != null) {
+            dataWriter.markDirty();
         }
     }
 
+    // プレイヤー記録と保留通知は専用ファイルへ移行済みのため、data.yml には残りの設定のみを書き出す
+    private DataFileWriter.Snapshot snapshotData() {
+        String yaml = dataConfig.saveToString();
+        return () -> yaml;
+    }
+
     @EventHandler
     public void onPlayerDeath(PlayerDeathEvent event) {
         Player player = event.getEntity();
@@ -372,9 +528,8 @@ public class JigokuBanControlPlugin extends JavaPlugin implements Listener, Plug
     }
 
     private void recordPlayerDeath(UUID uuid) {
-        deadPlayers.add(uuid);
+        playerRegistry.markDead(uuid);
         recentlyDiedPlayers.add(uuid);
-        saveData();
         
         // 10秒後に最近死亡したプレイヤーのリストから削除
         Bukkit.getScheduler().runTaskLater(this, () -> {
@@ -383,13 +538,13 @@ public class JigokuBanControlPlugin extends JavaPlugin implements Listener, Plug
     }
 
     private void sendDeathNotification(Player player, String deathMessage) {
-        ByteArrayDataOutput out = ByteStreams.newDataOutput();
-        out.writeUTF("death_notification");
-        out.writeUTF(player.getUniqueId().toString());
-        out.writeUTF(deathMessage != null ? deathMessage : player.getName() + " died.");
-        out.writeBoolean(true); // 死亡による転送フラグ
+        byte[] message = MessageEncoder.of(Opcode.DEATH_NOTIFICATION)
+            .writeUuid(player.getUniqueId())
+            .writeString(deathMessage != null ? deathMessage : player.getName() + " died.")
+            .writeBoolean(true) // 死亡による転送フラグ
+            .toByteArray();
         
-        sendPluginMessage(out.toByteArray());
+        sendPluginMessage(message);
     }
 
     // デバッグ: 権限保持者が実行したコマンドをログ出力（他プラグインに奪われていないかの切り分け）
@@ -423,42 +578,26 @@ public class JigokuBanControlPlugin extends JavaPlugin implements Listener, Plug
         String playerName = player.getName();
         
         // 既に保留リストにある場合はスキップ
-        if (isPendingNightLogout(playerUuid)) {
+        if (nightLogoutOutbox.contains(playerUuid)) {
             getLogger().info("既に保留リストに存在: " + playerName);
             return;
         }
         
         // 夜間ログアウトを送信または保留
-        ByteArrayDataOutput out = ByteStreams.newDataOutput();
-        out.writeUTF("night_logout");
-        out.writeUTF(playerUuid.toString());
-        out.writeBoolean(false); // 死亡による転送ではない
-
-        byte[] payload = out.toByteArray();
+        byte[] payload = MessageEncoder.of(Opcode.NIGHT_LOGOUT)
+            .writeUuid(playerUuid)
+            .writeBoolean(false) // 死亡による転送ではない
+            .toByteArray();
         boolean sent = sendPluginMessage(player, payload);
         getLogger().info(String.format("夜間ログアウト通知送信: player=%s sent=%b", playerName, sent));
 
         if (!sent) {
             // 送信できない場合は保留
-            savePendingNightLogout(playerUuid, playerName);
+            nightLogoutOutbox.add(playerUuid, playerName);
+            getLogger().info("夜間ログアウト通知を保留しました: " + playerName);
         }
     }
 
-    private boolean isPendingNightLogout(UUID uuid) {
-        List<String> pendingList = dataConfig.getStringList("pending-night-logouts");
-        return pendingList.contains(uuid.toString());
-    }
-
-    private void savePendingNightLogout(UUID uuid, String playerName) {
-        List<String> pendingList = new ArrayList<>(dataConfig.getStringList("pending-night-logouts"));
-        pendingList.add(uuid.toString());
-        dataConfig.set("pending-night-logouts", pendingList);
-        dataConfig.set("pending-night-logout-time." + uuid.toString(), System.currentTimeMillis());
-        dataConfig.set("pending-night-logout-name." + uuid.toString(), playerName);
-        saveData();
-    getLogger().info("夜間ログアウト通知を保留しました: " + playerName);
-    }
-
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
@@ -472,64 +611,41 @@ public class JigokuBanControlPlugin extends JavaPlugin implements Listener, Plug
     }
 
     private void processPendingMessages(Player player) {
-        // 保留中の夜間ログアウト通知を送信
+        // 保留中のプロキシ宛てメッセージと夜間ログアウト通知を送信
         Bukkit.getScheduler().runTaskLater(this, () -> {
+            if (player.isOnline()) {
+                messageOutbox.flush(player);
+            }
             sendPendingNightLogouts(player);
         }, 20L);
     }
 
+    // 保留中の通知をまとめて送信し、送信できたものだけをキューから取り除く
     private void sendPendingNightLogouts(Player player) {
-        List<String> pendingList = new ArrayList<>(dataConfig.getStringList("pending-night-logouts"));
-        if (pendingList.isEmpty()) return;
-        
-        List<String> toRemove = new ArrayList<>();
-        long currentTime = System.currentTimeMillis();
-        
-        for (String uuidString : pendingList) {
-            Long timestamp = dataConfig.getLong("pending-night-logout-time." + uuidString);
-            
-            // 期限切れのデータを削除
-            if (timestamp != null && currentTime - timestamp > PENDING_MESSAGE_EXPIRE_TIME) {
-                toRemove.add(uuidString);
-                cleanupPendingData(uuidString);
-                continue;
+        if (nightLogoutOutbox.isEmpty() || !player.isOnline()) return;
+
+        int delivered = 0;
+        for (NightLogoutOutbox.Entry entry : nightLogoutOutbox.pending()) {
+            byte[] payload = MessageEncoder.of(Opcode.NIGHT_LOGOUT)
+                .writeUuid(entry.getUuid())
+                .writeBoolean(false)
+                .toByteArray();
+            if (!sendPluginMessage(player, payload)) {
+                break;
             }
-            
-            // 夜間ログアウト通知を送信
-            ByteArrayDataOutput out = ByteStreams.newDataOutput();
-            out.writeUTF("night_logout");
-            out.writeUTF(uuidString);
-            out.writeBoolean(false);
-            boolean sent = sendPluginMessage(player, out.toByteArray());
-            getLogger().info(String.format("夜間ログアウト通知を再送: target=%s sent=%b", uuidString, sent));
-
-            toRemove.add(uuidString);
-            cleanupPendingData(uuidString);
+            nightLogoutOutbox.remove(entry.getUuid());
+            delivered++;
         }
-        
-        // 処理済みのデータを削除
-        pendingList.removeAll(toRemove);
-        updatePendingList(pendingList);
-    }
-
-    private void cleanupPendingData(String uuidString) {
-        dataConfig.set("pending-night-logout-time." + uuidString, null);
-        dataConfig.set("pending-night-logout-name." + uuidString, null);
-    }
-
-    private void updatePendingList(List<String> pendingList) {
-        if (pendingList.isEmpty()) {
-            dataConfig.set("pending-night-logouts", null);
-        } else {
-            dataConfig.set("pending-night-logouts", pendingList);
+        if (delivered > 0) {
+            getLogger().info(String.format("保留中の夜間ログアウト通知を再送しました: %d件 (残り%d件)",
+                delivered, nightLogoutOutbox.size()));
         }
-        saveData();
     }
 
     private void handlePlayerJoinState(Player player, UUID playerUUID) {
-        if (deadPlayers.contains(playerUUID)) {
+        if (playerRegistry.isDead(playerUUID)) {
             handleDeadPlayerJoin(player, playerUUID);
-        } else if (!joinedPlayers.contains(playerUUID)) {
+        } else if (!playerRegistry.hasJoined(playerUUID)) {
             handleFirstTimeJoin(player, playerUUID);
         } else {
             handleRegularJoin(player);
@@ -538,15 +654,12 @@ public class JigokuBanControlPlugin extends JavaPlugin implements Listener, Plug
 
     private void handleDeadPlayerJoin(Player player, UUID playerUUID) {
         teleportToRandomLocation(player, "§cあなたは死から蘇り、見知らぬ場所へ飛ばされた...");
-        deadPlayers.remove(playerUUID);
-        joinedPlayers.add(playerUUID);
-        saveData();
+        playerRegistry.markJoined(playerUUID);
     }
 
     private void handleFirstTimeJoin(Player player, UUID playerUUID) {
         teleportToRandomLocation(player, "§e地獄へようこそ！");
-        joinedPlayers.add(playerUUID);
-        saveData();
+        playerRegistry.markJoined(playerUUID);
         
         // 初参加者向けの情報表示
         showWelcomeMessage(player);
@@ -584,35 +697,61 @@ public class JigokuBanControlPlugin extends JavaPlugin implements Listener, Plug
     private void teleportToRandomLocation(Player player, String welcomeMessage) {
         World world = player.getWorld();
         
-        // 安全なテレポート先を取得
-        Location randomLocation = getSafeSpawnLocation(world);
+        // 事前確保したプールから取り出す
+        Location pooled = pollPooledSpawn(world);
+        if (pooled != null) {
+            Bukkit.getScheduler().runTask(this, () -> teleportToSpawn(player, pooled, welcomeMessage));
+            return;
+        }
         
-        // プレイヤーをランダムな座標にテレポート
-        Bukkit.getScheduler().runTask(this, () -> {
-            player.teleport(randomLocation);
+        // プールが空の場合は非同期で探索し、見つかった時点でテレポート
+        findSafeSpawnAsync(world, MAX_ASYNC_SPAWN_ATTEMPTS).whenComplete((location, throwable) -> {
+            if (throwable != null) {
+                getLogger().log(Level.WARNING, "スポーン地点の非同期探索に失敗しました", throwable);
+            }
+            if (!player.isOnline()) {
+                return;
+            }
+            Location target = (location != null) ? location : forceFindSafeLocation(world);
+            teleportToSpawn(player, target, welcomeMessage);
+        });
+    }
+
+    private void teleportToSpawn(Player player, Location location, String welcomeMessage) {
+        // プレイヤーをランダムな座標にテレポート（チャンクは非同期に読み込まれ、完了はメインスレッド）
+        player.teleportAsync(location).whenComplete((success, throwable) -> {
+            if (throwable != null || !Boolean.TRUE.equals(success)) {
+                getLogger().log(Level.WARNING, String.format("%s のスポーン地点へのテレポートに失敗しました", player.getName()), throwable);
+                return;
+            }
             player.sendMessage(welcomeMessage);
             
             // スポーン地点の座標を表示
             player.sendMessage(String.format("§7スポーン地点: X:%d Y:%d Z:%d", 
-                randomLocation.getBlockX(), 
-                randomLocation.getBlockY(), 
-                randomLocation.getBlockZ()));
+                location.getBlockX(), 
+                location.getBlockY(), 
+                location.getBlockZ()));
         });
     }
 
-    private Location getSafeSpawnLocation(World world) {
-        if (world == null) {
-            world = getMainWorld();
+    private Location pollPooledSpawn(World world) {
+        if (spawnPool != null && spawnPool.isFor(world)) {
+            return spawnPool.poll();
         }
-        
-        // キャッシュを使用した高速化
-        List<Location> cachedLocations = findMultipleSafeLocations(world, 5);
-        if (!cachedLocations.isEmpty()) {
-            return cachedLocations.get(random.nextInt(cachedLocations.size()));
+        return null;
+    }
+
+    // 候補を1つずつ非同期に評価し、見つからなければ null で完了する（完了はメインスレッド）
+    private CompletableFuture<Location> findSafeSpawnAsync(World world, int attemptsLeft) {
+        if (attemptsLeft <= 0) {
+            return CompletableFuture.completedFuture(null);
         }
-        
-        // キャッシュが見つからない場合は強制的に場所を確保
-        return forceFindSafeLocation(world);
+        int[] coords = pickRandomCoordinatesWithinBorder(world);
+        return spawnSearcher.search(world, coords[0], coords[1])
+            .exceptionally(throwable -> null)
+            .thenCompose(location -> location != null
+                ? CompletableFuture.completedFuture(location)
+                : findSafeSpawnAsync(world, attemptsLeft - 1));
     }
 
     private int[] pickRandomCoordinatesWithinBorder(World world) {
@@ -666,78 +805,28 @@ public class JigokuBanControlPlugin extends JavaPlugin implements Listener, Plug
         return new int[]{fallbackX, fallbackZ};
     }
 
-    private List<Location> findMultipleSafeLocations(World world, int count) {
-        List<Location> locations = new ArrayList<>();
-        int maxAttempts = 50; // 試行回数を制限
-        
-        for (int i = 0; i < maxAttempts && locations.size() < count; i++) {
-            int[] coords = pickRandomCoordinatesWithinBorder(world);
-            int x = coords[0];
-            int z = coords[1];
-            
-            Location loc = world.getEnvironment() == World.Environment.NETHER
-                ? findSafeNetherLocation(world, x, z)
-                : findSafeNormalLocation(world, x, z);
-                
-            if (loc != null && world.getWorldBorder().isInside(loc)) {
-                locations.add(loc);
-            }
-        }
-        
-        return locations;
-    }
-
-    private Location findSafeNormalLocation(World world, int x, int z) {
-        int y = world.getHighestBlockYAt(x, z);
-        // 海面より低い場合は、海面まで引き上げる
-        if (y < world.getSeaLevel()) {
-            y = world.getSeaLevel();
-        }
-
-        for (int i = 0; i < 10; i++) { // 10回試行
-            Material ground = world.getBlockAt(x, y, z).getType();
-            Material feet = world.getBlockAt(x, y + 1, z).getType();
-            Material head = world.getBlockAt(x, y + 2, z).getType();
-
-            if (isSolidGround(ground) && !isDangerousBlock(ground) && isSafeToStand(feet) && isSafeToStand(head) && isSurroundingSafe(world, x, y + 1, z)) {
-                Location candidate = new Location(world, x + 0.5, y + 1, z + 0.5);
-                if (world.getWorldBorder().isInside(candidate)) {
-                    return candidate;
-                }
-            }
-            y++; // 少し上にずらして再試行
+    private boolean isStillSafeSpawn(Location location) {
+        World world = location.getWorld();
+        boolean safe = spawnSafety.isStandable((x, y, z) -> world.getBlockAt(x, y, z).getType(),
+            location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        if (!safe && spawnCache != null && spawnCache.isFor(world)) {
+            // キャッシュの記録が古くなっているので破棄する
+            spawnCache.invalidate(location.getBlockX() >> 4, location.getBlockZ() >> 4);
         }
-        return null;
-    }
-
-    private Location findSafeNetherLocation(World world, int x, int z) {
-        // 32から100の間で安全な場所を探す
-        for (int y = 32; y < 100; y++) {
-            Material feetMaterial = world.getBlockAt(x, y, z).getType();
-            Material headMaterial = world.getBlockAt(x, y + 1, z).getType();
-            Material groundMaterial = world.getBlockAt(x, y - 1, z).getType();
-
-            // 2ブロックの空間があり、足元が固体ブロックであること
-            if (isSafeToStand(feetMaterial) && isSafeToStand(headMaterial) && isSolidGround(groundMaterial) && !isDangerousBlock(groundMaterial)) {
-                 if (isSurroundingSafe(world, x, y, z)) {
-                    Location candidate = new Location(world, x + 0.5, y, z + 0.5);
-                    if (world.getWorldBorder().isInside(candidate)) {
-                        return candidate;
-                    }
-                }
-            }
-        }
-        return null;
+        return safe;
     }
 
     private Location forceFindSafeLocation(World world) {
         // メソッド名を修正: forceFinSafeLocation -> forceFindSafeLocation
-        // 最小範囲の近くで必ず見つける
+        // メインスレッドで呼ばれるため、読み込み済みのチャンクだけを数回試す（同期読み込みはしない）
         WorldBorder border = world.getWorldBorder();
-        for (int attempts = 0; attempts < 1000; attempts++) {
+        for (int attempts = 0; attempts < MAX_FORCED_SPAWN_ATTEMPTS; attempts++) {
             int[] coords = pickRandomCoordinatesWithinBorder(world);
             int x = coords[0];
             int z = coords[1];
+            if (!world.isChunkLoaded(x >> 4, z >> 4)) {
+                continue;
+            }
             
             // Y座標を強制的に安全な高さに設定
             int y;
@@ -753,7 +842,7 @@ public class JigokuBanControlPlugin extends JavaPlugin implements Listener, Plug
             Material feet = world.getBlockAt(x, y, z).getType();
             Material head = world.getBlockAt(x, y + 1, z).getType();
             
-            if (feet.isAir() && head.isAir() && !below.isAir() && !isDangerousBlock(below)) {
+            if (feet.isAir() && head.isAir() && !below.isAir() && !spawnSafety.isDangerousBlock(below)) {
                 Location candidate = new Location(world, x + 0.5, y, z + 0.5);
                 if (!border.isInside(candidate)) {
                     continue;
@@ -763,105 +852,11 @@ public class JigokuBanControlPlugin extends JavaPlugin implements Listener, Plug
             }
         }
         
-        // 最終手段：原点から離れた固定位置
-        Location center = border.getCenter();
-        int centerX = (int) Math.round(center.getX());
-        int centerZ = (int) Math.round(center.getZ());
-        int emergencyY = world.getHighestBlockYAt(centerX, centerZ) + 1;
-        Location emergency = new Location(world, centerX + 0.5, emergencyY, centerZ + 0.5);
-        getLogger().severe("安全なスポーン地点が見つからなかったため、ワールドボーダー中心付近を使用します。");
-        return emergency;
-    }
-    
-    // プレイヤーが立てる空間かチェック（改善版）
-    private boolean isSafeToStand(Material material) {
-        return material.isAir() || 
-               material == Material.CAVE_AIR || 
-               material == Material.VOID_AIR ||
-               material == Material.TALL_GRASS ||
-               material == Material.FERN ||
-               material == Material.LARGE_FERN ||
-               material == Material.DEAD_BUSH ||
-               material == Material.VINE ||
-               material == Material.SUGAR_CANE ||
-               material == Material.WHEAT ||
-               material == Material.CARROTS ||
-               material == Material.POTATOES ||
-               material == Material.BEETROOTS ||
-               (!material.isSolid() && !material.name().contains("WATER") && !material.name().contains("LAVA"));
+        // 最終手段：ワールドのスポーン地点
+        getLogger().severe("安全なスポーン地点が見つからなかったため、ワールドのスポーン地点を使用します。");
+        return world.getSpawnLocation();
     }
     
-    // 固体の地面かチェック（改善版）
-    private boolean isSolidGround(Material material) {
-        return material.isSolid() && 
-               material != Material.BARRIER &&
-               material != Material.BEDROCK && // ベッドロックの上は避ける（奈落の可能性）
-               !material.name().contains("SIGN") &&
-               !material.name().contains("BANNER") &&
-               !material.name().contains("DOOR") &&
-               !material.name().contains("GATE") &&
-               !material.name().contains("TRAPDOOR") &&
-               !material.name().contains("SLAB") && // ハーフブロックは避ける
-               !material.name().contains("STAIRS"); // 階段も避ける
-    }
-    
-    // 危険なブロックかチェック（改善版）
-    private boolean isDangerousBlock(Material material) {
-        return material == Material.LAVA || 
-               material == Material.WATER ||
-               material == Material.FIRE ||
-               material == Material.SOUL_FIRE ||
-               material == Material.CAMPFIRE ||
-               material == Material.SOUL_CAMPFIRE ||
-               material == Material.MAGMA_BLOCK ||
-               material == Material.SWEET_BERRY_BUSH ||
-               material == Material.WITHER_ROSE ||
-               material == Material.CACTUS ||
-               material == Material.POWDER_SNOW ||
-               material == Material.POINTED_DRIPSTONE ||
-               material.name().contains("PRESSURE_PLATE") ||
-               material.name().contains("TRIPWIRE") ||
-               material.name().contains("TNT") ||
-               material.name().contains("PISTON") ||
-               material.name().contains("OBSERVER");
-    }
-    
-    // 周囲の安全性をチェック（改善版）
-    private boolean isSurroundingSafe(World world, int x, int y, int z) {
-        // 5x5x3の範囲で危険なブロックがないかチェック
-        for (int dx = -2; dx <= 2; dx++) {
-            for (int dz = -2; dz <= 2; dz++) {
-                for (int dy = -1; dy <= 1; dy++) {
-                    Material block = world.getBlockAt(x + dx, y + dy, z + dz).getType();
-                    // 即座に危険なブロック
-                    if (block == Material.LAVA || block == Material.FIRE || block == Material.SOUL_FIRE) {
-                        return false;
-                    }
-                    // 近くにあると危険なブロック
-                    if (Math.abs(dx) <= 1 && Math.abs(dz) <= 1) {
-                        if (block == Material.CACTUS || block == Material.SWEET_BERRY_BUSH || 
-                            block == Material.WITHER_ROSE || block == Material.MAGMA_BLOCK ||
-                            block == Material.CAMPFIRE || block == Material.SOUL_CAMPFIRE) {
-                            return false;
-                        }
-                    }
-                }
-            }
-        }
-        
-        // 上方向の安全性（落下物チェック）
-        for (int dy = 2; dy <= 5; dy++) {
-            Material above = world.getBlockAt(x, y + dy, z).getType();
-            if (above == Material.SAND || above == Material.GRAVEL || 
-                above == Material.ANVIL || above == Material.POINTED_DRIPSTONE ||
-                above.name().contains("CONCRETE_POWDER")) {
-                return false;
-            }
-        }
-        
-        return true;
-    }
-
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
         if (!(sender instanceof Player)) {
@@ -918,10 +913,8 @@ public class JigokuBanControlPlugin extends JavaPlugin implements Listener, Plug
             saveWithHuskSyncOrRun(player, () -> {
                 getLogger().info("[HuskSyncHook] 転送直前 (gense) callback開始 player=" + player.getName());
                 // データ保存完了後にVelocityに転送リクエストを送信
-                ByteArrayDataOutput out = ByteStreams.newDataOutput();
-                out.writeUTF("gense_transfer");
-                out.writeUTF(player.getUniqueId().toString());
-                player.sendPluginMessage(this, CHANNEL, out.toByteArray());
+                byte[] message = MessageEncoder.of(Opcode.GENSE_TRANSFER).writeUuid(player.getUniqueId()).toByteArray();
+                player.sendPluginMessage(this, CHANNEL, message);
                 
                 getLogger().info("[HuskSyncHook] データ保存完了 -> 現世転送実行 player=" + player.getName());
             });
@@ -947,10 +940,7 @@ public class JigokuBanControlPlugin extends JavaPlugin implements Listener, Plug
             saveWithHuskSyncOrRun(player, () -> {
                 getLogger().info("[HuskSyncHook] 転送直前 (admin_gense) callback開始 player=" + player.getName());
                 // データ保存完了後にVelocityに転送リクエストを送信
-                ByteArrayDataOutput out = ByteStreams.newDataOutput();
-                out.writeUTF("admin_gense_transfer");
-                out.writeUTF(player.getUniqueId().toString());
-                sendPluginMessage(out.toByteArray());
+                sendPluginMessage(MessageEncoder.of(Opcode.ADMIN_GENSE_TRANSFER).writeUuid(player.getUniqueId()).toByteArray());
                 
                 getLogger().info("[HuskSyncHook] データ保存完了 -> 管理者現世転送実行 player=" + player.getName());
             });
@@ -965,57 +955,15 @@ public class JigokuBanControlPlugin extends JavaPlugin implements Listener, Plug
     }
 
     private void showJigokuTime(Player player) {
-        if (mysqlEnabled) {
-            // MySQLから時刻情報を取得
-            getJigokuTimeFromMySQL(player);
+        // このサーバー自身のワールド時刻を直接表示する（DB参照は不要）
+        World world = getMainWorld();
+        if (world != null) {
+            displayTimeInfo(player, world.getTime());
         } else {
-            // ローカルワールドから時刻情報を取得
-            World world = getMainWorld();
-            if (world != null) {
-                displayTimeInfo(player, world.getTime());
-            } else {
-                player.sendMessage("§c時刻情報を取得できませんでした。");
-            }
+            player.sendMessage("§c時刻情報を取得できませんでした。");
         }
     }
 
-    private void getJigokuTimeFromMySQL(Player player) {
-        if (!mysqlEnabled || dataSource == null) {
-            player.sendMessage("§cMySQL接続が利用できません。");
-            return;
-        }
-        
-        // 非同期でMySQLから時刻を取得
-        Bukkit.getScheduler().runTaskAsynchronously(this, () -> {
-            String query = "SELECT time, is_night, last_update FROM world_times WHERE world_name = ?";
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(query)) {
-                stmt.setString(1, "jigoku");
-                try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        long time = rs.getLong("time");
-                        boolean isNight = rs.getBoolean("is_night");
-                        Timestamp lastUpdate = rs.getTimestamp("last_update");
-                        
-                        // メインスレッドで結果を表示
-                        Bukkit.getScheduler().runTask(this, () -> {
-                            displayTimeInfoWithDetails(player, time, isNight, lastUpdate);
-                        });
-                    } else {
-                        Bukkit.getScheduler().runTask(this, () -> {
-                            player.sendMessage("§c地獄ワールドの時刻情報が見つかりません。");
-                        });
-                    }
-                }
-            } catch (SQLException e) {
-                getLogger().log(Level.WARNING, "MySQLから時刻情報の取得に失敗しました。", e);
-                Bukkit.getScheduler().runTask(this, () -> {
-                    player.sendMessage("§cデータベースエラーが発生しました。");
-                });
-            }
-        });
-    }
-
     private void displayTimeInfo(Player player, long time) {
         long normalizedTime = time % 24000;
         boolean isNight = normalizedTime >= 13000 && normalizedTime < 23000;  // 24000 から 23000 に変更
@@ -1038,35 +986,6 @@ public class JigokuBanControlPlugin extends JavaPlugin implements Listener, Plug
         }
     }
 
-    private void displayTimeInfoWithDetails(Player player, long time, boolean isNight, Timestamp lastUpdate) {
-        long normalizedTime = time % 24000;
-        
-        player.sendMessage("§6=== 地獄ワールドの時刻情報 ===");
-        player.sendMessage(String.format("§e現在時刻: §f%d §7/ 24000", normalizedTime));
-        player.sendMessage(String.format("§e時間帯: %s §7(DB: %s)", 
-            isNight ? "§c夜" : "§a昼",
-            isNight ? "夜" : "昼"));
-        
-        if (isNight) {
-            long ticksUntilDay = 23000 - normalizedTime;  // 24000 から 23000 に変更
-            long secondsUntilDay = ticksUntilDay / 20;
-            player.sendMessage(String.format("§e朝まで: §f%d秒 §7(%dティック)", secondsUntilDay, ticksUntilDay));
-            player.sendMessage("§c※ 夜間は/genseコマンドが使用できません");
-        } else {
-            long ticksUntilNight = 13000 - normalizedTime;  // 12000 から 13000 に変更
-            if (ticksUntilNight < 0) ticksUntilNight += 24000;
-            long secondsUntilNight = ticksUntilNight / 20;
-            player.sendMessage(String.format("§e夜まで: §f%d秒 §7(%dティック)", secondsUntilNight, ticksUntilNight));
-            player.sendMessage("§a※ 昼間は/genseコマンドで現世に戻れます");
-        }
-        
-        // 最終更新時刻を表示
-        if (lastUpdate != null) {
-            long secondsAgo = (System.currentTimeMillis() - lastUpdate.getTime()) / 1000;
-            player.sendMessage(String.format("§7最終更新: %d秒前", secondsAgo));
-        }
-    }
-
     private void connectToServer(Player player, String serverName) {
         ByteArrayDataOutput out = ByteStreams.newDataOutput();
         out.writeUTF("Connect");
@@ -1080,39 +999,46 @@ public class JigokuBanControlPlugin extends JavaPlugin implements Listener, Plug
             return;
         }
         
-        ByteArrayDataInput in = ByteStreams.newDataInput(message);
-        String subChannel = in.readUTF();
-        
-        switch (subChannel) {
-            case "heartbeat":
-                // ハートビート応答を送信
-                sendHeartbeatResponse();
-                break;
+        try {
+            MessageDecoder in = MessageDecoder.decode(message);
+            messageHandlers.dispatch(in, player);
+        } catch (ProtocolException e) {
+            getLogger().warning("プラグインメッセージを解読できませんでした: " + e.getMessage());
         }
     }
 
-    private void sendHeartbeatResponse() {
+    private void sendHeartbeatResponse(int requestId) {
         World world = getMainWorld();
         if (world != null) {
-            ByteArrayDataOutput out = ByteStreams.newDataOutput();
-            out.writeUTF("heartbeat_response");
-            out.writeUTF(isNight(world) ? "jigoku_night" : "jigoku_day");
-            out.writeLong(world.getTime());
+            byte[] message = MessageEncoder.of(Opcode.HEARTBEAT_RESPONSE)
+                .writeVarInt(requestId)
+                .writeBoolean(isNight(world))
+                .writeVarLong(world.getTime())
+                .toByteArray();
             
-            sendPluginMessage(out.toByteArray());
+            // 定期的なハートビートへの未送信の古い応答は最新の応答で置き換える（ID 付きの要求には個別に応答する）
+            sendTimeMessage(requestId == 0 ? "heartbeat_response" : null, message);
         }
     }
 
-    private void sendTimeStateToProxy(String state) {
-        ByteArrayDataOutput out = ByteStreams.newDataOutput();
-        out.writeUTF("time_state");
-        out.writeUTF(state);
-        
-        sendPluginMessage(out.toByteArray());
+    private void sendTimeSyncToProxy(long time) {
+        // 時刻補正は最新の値のみ意味を持つ
+        sendTimeMessage("time_sync", MessageEncoder.of(Opcode.TIME_SYNC).writeVarLong(time).toByteArray());
+    }
+
+    private void sendTimeStateToProxy(boolean night) {
+        sendTimeMessage(null, MessageEncoder.of(Opcode.TIME_STATE).writeBoolean(night).toByteArray());
+    }
+
+    // 送信キュー経由で送る（送信経路が無い場合はプレイヤーの参加まで保持される）
+    private void sendPluginMessage(byte[] message) {
+        messageOutbox.send(message);
     }
 
-    private boolean sendPluginMessage(byte[] message) {
-        return sendPluginMessage(null, message);
+    // 時刻情報はプロキシが受信した時点の値として扱うため、遅れて届くと昼夜の判定を誤らせる。
+    // 期限内に送れなかったものは破棄する（次の補正やハートビートで最新の値が届く）。
+    private void sendTimeMessage(String coalesceKey, byte[] message) {
+        messageOutbox.send(coalesceKey, message, outboxTimeMessageTtlMillis);
     }
 
     private boolean sendPluginMessage(Player preferredSender, byte[] message) {
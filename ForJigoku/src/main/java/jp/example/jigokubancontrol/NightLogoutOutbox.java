@@ -0,0 +1,261 @@
+package jp.example.jigokubancontrol;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * プロキシへ送信できなかった夜間ログアウト通知の保留キュー
+ * UUIDで索引したメモリ上のキューと night-logouts.log（追記専用）で管理し、
+ * 保存期間を過ぎた通知は先頭から順に破棄する。
+ * 操作はすべてメインスレッドで行う。
+ */
+public class NightLogoutOutbox {
+
+    private static final int MAGIC = 0x4E4C4F31; // "NLO1"
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 2;
+
+    private final File file;
+    private final Logger logger;
+    private final long ttlMillis;
+    // 登録順（＝期限切れ順）を保持する
+    private final Map<UUID, Entry> entries = new LinkedHashMap<>();
+    private OutputStream out;
+    private int records;
+
+    public NightLogoutOutbox(File dataFolder, Logger logger, long ttlMillis) {
+        this.file = new File(dataFolder, "night-logouts.log");
+        this.logger = logger;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /** 保留中の通知 */
+    public static final class Entry {
+        final UUID uuid;
+        final String playerName;
+        final long queuedAt;
+
+        Entry(UUID uuid, String playerName, long queuedAt) {
+            this.uuid = uuid;
+            this.playerName = playerName;
+            this.queuedAt = queuedAt;
+        }
+
+        public UUID getUuid() {
+            return uuid;
+        }
+
+        public String getPlayerName() {
+            return playerName;
+        }
+    }
+
+    public boolean exists() {
+        return file.exists();
+    }
+
+    /**
+     * night-logouts.log を再生して保留キューを復元し、期限切れを除いて書き直す
+     */
+    public void load() {
+        entries.clear();
+        records = replay();
+        int expired = expire(System.currentTimeMillis());
+        if (records > entries.size()) {
+            rewrite();
+        }
+        open();
+        logger.info(String.format("保留中の夜間ログアウト通知を読み込みました (%d件, 期限切れ: %d件)", entries.size(), expired));
+    }
+
+    /**
+     * data.yml の pending-night-logouts からの移行
+     */
+    public void importLegacy(List<Entry> legacy) {
+        for (Entry entry : legacy) {
+            entries.put(entry.uuid, entry);
+        }
+        expire(System.currentTimeMillis());
+        rewrite();
+        open();
+        logger.info(String.format("data.yml から %d件の保留中の夜間ログアウト通知を移行しました", entries.size()));
+    }
+
+    public static Entry legacyEntry(UUID uuid, String playerName, long queuedAt) {
+        return new Entry(uuid, playerName, queuedAt);
+    }
+
+    public boolean contains(UUID uuid) {
+        return entries.containsKey(uuid);
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void add(UUID uuid, String playerName) {
+        Entry entry = new Entry(uuid, playerName, System.currentTimeMillis());
+        entries.put(uuid, entry);
+        append(entry, OP_ADD);
+    }
+
+    /** 送信済みの通知をキューから取り除く */
+    public void remove(UUID uuid) {
+        Entry entry = entries.remove(uuid);
+        if (entry != null) {
+            append(entry, OP_REMOVE);
+        }
+    }
+
+    /**
+     * 期限切れを取り除いた上で、送信すべき通知を登録順に返す
+     */
+    public List<Entry> pending() {
+        int expired = expire(System.currentTimeMillis());
+        if (expired > 0) {
+            logger.info(String.format("期限切れの夜間ログアウト通知を%d件破棄しました", expired));
+        }
+        return new ArrayList<>(entries.values());
+    }
+
+    public void close() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException e) {
+            logger.warning("night-logouts.logのクローズに失敗しました: " + e.getMessage());
+        }
+        out = null;
+    }
+
+    // 先頭（最も古い通知）から期限切れのものを取り除く
+    private int expire(long now) {
+        int expired = 0;
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (now - entry.queuedAt <= ttlMillis) {
+                break;
+            }
+            it.remove();
+            if (out != null) {
+                append(entry, OP_REMOVE);
+            }
+            expired++;
+        }
+        return expired;
+    }
+
+    private void append(Entry entry, byte op) {
+        if (out == null) {
+            open();
+            if (out == null) {
+                return;
+            }
+        }
+        try {
+            DataOutputStream data = new DataOutputStream(out);
+            writeRecord(data, entry, op);
+            data.flush();
+            records++;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "night-logouts.logへの追記に失敗しました", e);
+        }
+    }
+
+    private int replay() {
+        if (!file.exists() || file.length() == 0) return 0;
+
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                logger.severe("night-logouts.log の形式が不正なため読み込みをスキップします");
+                return 0;
+            }
+            while (true) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException end) {
+                    break;
+                }
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                if (op == OP_ADD) {
+                    long queuedAt = in.readLong();
+                    String playerName = in.readUTF();
+                    entries.remove(uuid);
+                    entries.put(uuid, new Entry(uuid, playerName, queuedAt));
+                } else if (op == OP_REMOVE) {
+                    entries.remove(uuid);
+                } else {
+                    logger.warning("night-logouts.log に未知のレコード種別 " + op + " があるため以降を無視します");
+                    break;
+                }
+                count++;
+            }
+        } catch (EOFException e) {
+            // 書き込み途中で停止した末尾レコードは破棄する（load で書き直される）
+            logger.warning("night-logouts.log の末尾に不完全なレコードがあったため無視しました");
+            count++;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "night-logouts.log の読み込みに失敗しました", e);
+        }
+        return count;
+    }
+
+    // 保留中の通知だけを一時ファイルに書き出してから置き換える
+    private void rewrite() {
+        close();
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                data.writeInt(MAGIC);
+                for (Entry entry : entries.values()) {
+                    writeRecord(data, entry, OP_ADD);
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            records = entries.size();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "night-logouts.log の書き直しに失敗しました", e);
+        }
+    }
+
+    private void open() {
+        if (out != null) return;
+        try {
+            boolean fresh = !file.exists() || file.length() == 0;
+            out = new BufferedOutputStream(new FileOutputStream(file, true));
+            if (fresh) {
+                new DataOutputStream(out).writeInt(MAGIC);
+                out.flush();
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "night-logouts.logを開けませんでした", e);
+            out = null;
+        }
+    }
+
+    private static void writeRecord(DataOutputStream data, Entry entry, byte op) throws IOException {
+        data.writeByte(op);
+        data.writeLong(entry.uuid.getMostSignificantBits());
+        data.writeLong(entry.uuid.getLeastSignificantBits());
+        if (op == OP_ADD) {
+            data.writeLong(entry.queuedAt);
+            data.writeUTF(entry.playerName != null ? entry.playerName : "Unknown");
+        }
+    }
+}
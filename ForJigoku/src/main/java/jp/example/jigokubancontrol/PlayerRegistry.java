@@ -0,0 +1,190 @@
+package jp.example.jigokubancontrol;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 地獄サーバーに参加したプレイヤーの記録
+ * players.dat に「UUID(16バイト) + 状態(1バイト)」のレコードを変更のたびに追記し、
+ * 起動時に再生してメモリ上の表を復元する。重複レコードが増えた場合は起動時に圧縮する。
+ * 操作はすべてメインスレッドで行う。
+ */
+public class PlayerRegistry {
+
+    private static final int MAGIC = 0x504C5231; // "PLR1"
+    private static final byte STATE_JOINED = 1;
+    private static final byte STATE_DEAD = 2; // 参加済みかつ死亡後未復帰
+    private static final int RECORD_SIZE = 17;
+
+    private final File file;
+    private final Logger logger;
+    private final Map<UUID, Byte> states = new HashMap<>();
+    private OutputStream out;
+    private int records;
+
+    public PlayerRegistry(File dataFolder, Logger logger) {
+        this.file = new File(dataFolder, "players.dat");
+        this.logger = logger;
+    }
+
+    public boolean exists() {
+        return file.exists();
+    }
+
+    /**
+     * players.dat を再生して状態を復元し、追記用に開く
+     */
+    public void load() {
+        states.clear();
+        records = replay();
+        // 書き込み途中で停止した末尾レコードがあれば、追記がずれないよう書き直す
+        boolean partialTail = file.length() > Integer.BYTES && (file.length() - Integer.BYTES) % RECORD_SIZE != 0;
+        if (partialTail || records > states.size() * 2 + 64) {
+            rewrite();
+        }
+        open();
+        logger.info(String.format("プレイヤー記録を読み込みました (%d人, レコード: %d件)", states.size(), records));
+    }
+
+    /**
+     * data.yml の joined-players / dead-players からの移行
+     */
+    public void importLegacy(Collection<UUID> joined, Collection<UUID> dead) {
+        for (UUID uuid : joined) {
+            states.put(uuid, STATE_JOINED);
+        }
+        for (UUID uuid : dead) {
+            states.put(uuid, STATE_DEAD);
+        }
+        rewrite();
+        open();
+        logger.info(String.format("data.yml から %d人のプレイヤー記録を移行しました", states.size()));
+    }
+
+    public boolean hasJoined(UUID uuid) {
+        return states.containsKey(uuid);
+    }
+
+    public boolean isDead(UUID uuid) {
+        Byte state = states.get(uuid);
+        return state != null && state == STATE_DEAD;
+    }
+
+    /** 参加済みとして記録する（死亡状態は解除される） */
+    public void markJoined(UUID uuid) {
+        update(uuid, STATE_JOINED);
+    }
+
+    /** 死亡状態として記録する */
+    public void markDead(UUID uuid) {
+        update(uuid, STATE_DEAD);
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    public void close() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException e) {
+            logger.warning("players.datのクローズに失敗しました: " + e.getMessage());
+        }
+        out = null;
+    }
+
+    private void update(UUID uuid, byte state) {
+        Byte previous = states.put(uuid, state);
+        if (previous != null && previous == state) {
+            return;
+        }
+        if (out == null) {
+            open();
+            if (out == null) {
+                return;
+            }
+        }
+        try {
+            DataOutputStream data = new DataOutputStream(out);
+            writeRecord(data, uuid, state);
+            data.flush();
+            records++;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "players.datへの追記に失敗しました", e);
+        }
+    }
+
+    private int replay() {
+        if (!file.exists() || file.length() == 0) return 0;
+
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                logger.severe("players.dat の形式が不正なため読み込みをスキップします");
+                return 0;
+            }
+            // 末尾の不完全なレコードは読まない
+            long complete = (file.length() - Integer.BYTES) / RECORD_SIZE;
+            for (long i = 0; i < complete; i++) {
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                byte state = in.readByte();
+                if (state != STATE_JOINED && state != STATE_DEAD) {
+                    logger.warning("players.dat に未知の状態 " + state + " があるため以降を無視します");
+                    break;
+                }
+                states.put(uuid, state);
+                count++;
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "players.dat の読み込みに失敗しました", e);
+        }
+        return count;
+    }
+
+    // 現在の状態だけを一時ファイルに書き出してから置き換える
+    private void rewrite() {
+        close();
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                data.writeInt(MAGIC);
+                for (Map.Entry<UUID, Byte> entry : states.entrySet()) {
+                    writeRecord(data, entry.getKey(), entry.getValue());
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            records = states.size();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "players.dat の圧縮に失敗しました", e);
+        }
+    }
+
+    private void open() {
+        if (out != null) return;
+        try {
+            boolean fresh = !file.exists() || file.length() == 0;
+            out = new BufferedOutputStream(new FileOutputStream(file, true));
+            if (fresh) {
+                new DataOutputStream(out).writeInt(MAGIC);
+                out.flush();
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "players.datを開けませんでした", e);
+            out = null;
+        }
+    }
+
+    private static void writeRecord(DataOutputStream data, UUID uuid, byte state) throws IOException {
+        data.writeLong(uuid.getMostSignificantBits());
+        data.writeLong(uuid.getLeastSignificantBits());
+        data.writeByte(state);
+    }
+}
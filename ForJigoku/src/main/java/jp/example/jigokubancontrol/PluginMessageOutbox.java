@@ -0,0 +1,335 @@
+package jp.example.jigokubancontrol;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * プロキシ宛てプラグインメッセージの送信キュー
+ * プラグインメッセージはオンラインのプレイヤー経由でしか送れないため、送信できない間は
+ * 追加順にメモリ上のキューに保持し、プレイヤーが参加した時点でまとめて送信する。
+ * キューは上限付きで、溢れた分は outbox.spill へ退避する（停止時もここへ書き出す）。
+ * 同じキーを持つメッセージ（時刻補正など）は最新のもののみ送信する。
+ * 有効期限付きのメッセージ（プロキシが受信時刻で扱う時刻情報）は、期限を過ぎると送信せずに破棄する。
+ * 期限は壁時計で記録するため、再起動をまたいで復元した分にも適用される。
+ * 操作はすべてメインスレッドで行う。
+ */
+public class PluginMessageOutbox {
+
+    private static final int MAGIC = 0x4F425832; // "OBX2"
+    private static final int MAX_PER_FLUSH = 256; // 1回の送信処理で送る最大件数
+
+    private final JavaPlugin plugin;
+    private final String channel;
+    private final int maxQueued;
+    private final boolean spillToDisk;
+    private final int maxSpilled;
+    private final File spillFile;
+    private final Deque<Message> queue = new ArrayDeque<>();
+    private final Map<String, Message> latestByKey = new HashMap<>();
+    private int live = 0; // キュー内の未破棄メッセージ数
+    private int spilled = 0;
+    private boolean flushScheduled = false;
+
+    private long sentCount = 0;
+    private long coalescedCount = 0;
+    private long droppedCount = 0;
+    private long expiredCount = 0;
+
+    public PluginMessageOutbox(JavaPlugin plugin, String channel, int maxQueued, boolean spillToDisk, int maxSpilled) {
+        this.plugin = plugin;
+        this.channel = channel;
+        this.maxQueued = Math.max(1, maxQueued);
+        this.spillToDisk = spillToDisk;
+        this.maxSpilled = Math.max(0, maxSpilled);
+        this.spillFile = new File(plugin.getDataFolder(), "outbox.spill");
+    }
+
+    private static final class Message {
+        final long expiresAt; // 壁時計（ミリ秒）、0 = 期限なし
+        final String key;
+        final byte[] payload;
+        boolean superseded = false;
+
+        Message(long expiresAt, String key, byte[] payload) {
+            this.expiresAt = expiresAt;
+            this.key = key;
+            this.payload = payload;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != 0 && now >= expiresAt;
+        }
+    }
+
+    /**
+     * 送信キューに追加し、送信可能であればすぐに送る
+     */
+    public void send(byte[] payload) {
+        send(null, payload, 0L);
+    }
+
+    /**
+     * キー付き・有効期限付きで送信キューに追加する。未送信の同じキーのメッセージは破棄される。
+     * ttlMillis 以内に送信できなければ破棄される（0 以下は期限なし）。
+     */
+    public void send(String key, byte[] payload, long ttlMillis) {
+        long expiresAt = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : 0L;
+        Message message = new Message(expiresAt, key, payload);
+        if (spilled > 0 || queue.size() >= maxQueued) {
+            // 退避中は順序を保つため新しいメッセージも退避する
+            spill(message);
+        } else {
+            enqueue(message);
+        }
+        flush(null);
+    }
+
+    /** 未送信のメッセージ数（退避分を含む） */
+    public int size() {
+        return live + spilled;
+    }
+
+    /**
+     * キューの内容を送信する。送信経路となるプレイヤーがいない場合は何もしない。
+     */
+    public void flush(Player preferredCarrier) {
+        Player carrier = findCarrier(preferredCarrier);
+        if (carrier == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int sent = 0;
+        Message message;
+        while (sent < MAX_PER_FLUSH && (message = queue.pollFirst()) != null) {
+            if (message.superseded) {
+                continue;
+            }
+            live--;
+            if (message.key != null) {
+                latestByKey.remove(message.key);
+            }
+            if (message.isExpired(now)) {
+                expiredCount++;
+                continue;
+            }
+            carrier.sendPluginMessage(plugin, channel, message.payload);
+            sent++;
+        }
+        if (queue.isEmpty() && spilled > 0) {
+            refillFromSpill();
+        }
+        sentCount += sent;
+        if (!queue.isEmpty() || spilled > 0) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * 定期的な再送の起点（送信経路が無かった場合の取りこぼし防止）
+     */
+    public void tick() {
+        if (!queue.isEmpty() || spilled > 0) {
+            flush(null);
+        }
+    }
+
+    /**
+     * 起動時に退避ファイルを読み込む
+     */
+    public void load() {
+        if (!spillFile.exists()) {
+            return;
+        }
+        List<Message> restored = readSpill();
+        deleteSpill();
+        long now = System.currentTimeMillis();
+        int expired = 0;
+        for (Message message : restored) {
+            if (message.isExpired(now)) {
+                expired++;
+            } else if (queue.size() < maxQueued && spilled == 0) {
+                enqueue(message);
+            } else {
+                spill(message);
+            }
+        }
+        expiredCount += expired;
+        if (!restored.isEmpty()) {
+            plugin.getLogger().info(String.format("未送信のプラグインメッセージを%d件復元しました (期限切れで破棄: %d件)",
+                restored.size() - expired, expired));
+        }
+    }
+
+    /**
+     * 未送信のメッセージを退避ファイルへ書き出す（停止時）
+     */
+    public void shutdown() {
+        List<Message> pending = new ArrayList<>();
+        for (Message message : queue) {
+            if (!message.superseded) {
+                pending.add(message);
+            }
+        }
+        if (spilled > 0) {
+            pending.addAll(readSpill());
+        }
+        long now = System.currentTimeMillis();
+        int before = pending.size();
+        pending.removeIf(message -> message.isExpired(now));
+        expiredCount += before - pending.size();
+        queue.clear();
+        latestByKey.clear();
+        live = 0;
+        if (spillToDisk && !pending.isEmpty()) {
+            writeSpill(pending);
+        } else {
+            droppedCount += pending.size();
+            deleteSpill();
+        }
+        spilled = 0;
+        plugin.getLogger().info(String.format("プラグインメッセージ送信統計: sent=%d coalesced=%d expired=%d dropped=%d pending=%d",
+            sentCount, coalescedCount, expiredCount, droppedCount, spillToDisk ? pending.size() : 0));
+    }
+
+    private void enqueue(Message message) {
+        if (message.key != null) {
+            Message previous = latestByKey.put(message.key, message);
+            if (previous != null) {
+                previous.superseded = true;
+                live--;
+                coalescedCount++;
+            }
+        }
+        queue.addLast(message);
+        live++;
+    }
+
+    private void spill(Message message) {
+        if (!spillToDisk || spilled >= maxSpilled) {
+            droppedCount++;
+            if (droppedCount == 1 || droppedCount % 100 == 0) {
+                plugin.getLogger().warning(String.format("送信キューが上限に達したためプラグインメッセージを破棄しました (累計%d件)", droppedCount));
+            }
+            return;
+        }
+        boolean fresh = !spillFile.exists() || spillFile.length() == 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile, true)))) {
+            if (fresh) {
+                out.writeInt(MAGIC);
+            }
+            writeRecord(out, message);
+            spilled++;
+        } catch (IOException e) {
+            droppedCount++;
+            plugin.getLogger().log(Level.WARNING, "outbox.spill への退避に失敗しました", e);
+        }
+    }
+
+    // 退避分をメモリ上のキューへ戻す（入り切らない分は退避ファイルに残す）
+    private void refillFromSpill() {
+        List<Message> restored = readSpill();
+        deleteSpill();
+        spilled = 0;
+        long now = System.currentTimeMillis();
+        for (Message message : restored) {
+            if (message.isExpired(now)) {
+                expiredCount++;
+            } else if (queue.size() < maxQueued && spilled == 0) {
+                enqueue(message);
+            } else {
+                spill(message);
+            }
+        }
+    }
+
+    private List<Message> readSpill() {
+        List<Message> messages = new ArrayList<>();
+        if (!spillFile.exists() || spillFile.length() == 0) {
+            return messages;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile)))) {
+            if (in.readInt() != MAGIC) {
+                plugin.getLogger().severe("outbox.spill の形式が不正なため読み込みをスキップします");
+                return messages;
+            }
+            while (true) {
+                long expiresAt;
+                try {
+                    expiresAt = in.readLong();
+                } catch (EOFException end) {
+                    break;
+                }
+                String key = in.readUTF();
+                byte[] payload = new byte[in.readInt()];
+                in.readFully(payload);
+                messages.add(new Message(expiresAt, key.isEmpty() ? null : key, payload));
+            }
+        } catch (EOFException e) {
+            plugin.getLogger().warning("outbox.spill の末尾に不完全なレコードがあったため無視しました");
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "outbox.spill の読み込みに失敗しました", e);
+        }
+        return messages;
+    }
+
+    private void writeSpill(List<Message> messages) {
+        File tmp = new File(spillFile.getParentFile(), spillFile.getName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                for (Message message : messages) {
+                    writeRecord(out, message);
+                }
+            }
+            Files.move(tmp.toPath(), spillFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            droppedCount += messages.size();
+            plugin.getLogger().log(Level.WARNING, "outbox.spill への書き出しに失敗しました", e);
+        }
+    }
+
+    private void deleteSpill() {
+        if (spillFile.exists() && !spillFile.delete()) {
+            plugin.getLogger().warning("outbox.spill を削除できませんでした");
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, Message message) throws IOException {
+        out.writeLong(message.expiresAt);
+        out.writeUTF(message.key != null ? message.key : "");
+        out.writeInt(message.payload.length);
+        out.write(message.payload);
+    }
+
+    private Player findCarrier(Player preferred) {
+        if (preferred != null && preferred.isOnline()) {
+            return preferred;
+        }
+        Collection<? extends Player> players = Bukkit.getOnlinePlayers();
+        return players.isEmpty() ? null : players.iterator().next();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled || !plugin.isEnabled()) {
+            return;
+        }
+        flushScheduled = true;
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            flushScheduled = false;
+            flush(null);
+        });
+    }
+}
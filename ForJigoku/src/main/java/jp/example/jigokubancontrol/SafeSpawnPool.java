@@ -0,0 +1,170 @@
+package jp.example.jigokubancontrol;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+
+/**
+ * 検証済みのスポーン地点をあらかじめ確保しておくプール
+ * 候補は SafeSpawnSearcher で非同期に探索し、低水位を下回ると自動で補充する。
+ * プール内の地点のチャンクはプラグインチケットで読み込んだままにしておくため、
+ * 取り出し時の再確認とブロック変更によるキャッシュ破棄が常に機能し、テレポート時に同期読み込みも起きない。
+ * チケットは取り出してからプレイヤーが到着するまでの間だけ残し、その後解放する。
+ * プールの操作はすべてメインスレッドで行う。
+ */
+public class SafeSpawnPool {
+
+    private static final int MAX_IN_FLIGHT = 2; // 同時に読み込むチャンク数
+    private static final int ATTEMPTS_PER_SLOT = 10; // 1枠あたりの最大試行回数
+    private static final long TICKET_RELEASE_DELAY_TICKS = 200L; // 取り出してからチケットを解放するまで
+
+    private final JavaPlugin plugin;
+    private final World world;
+    private final Function<World, int[]> coordinatePicker;
+    private final SafeSpawnSearcher searcher;
+    private final Predicate<Location> recheck;
+    private final int targetSize;
+    private final int lowWaterMark;
+    private final Deque<Location> pool = new ArrayDeque<>();
+    private final Map<Long, Integer> ticketHolds = new HashMap<>(); // チャンク → チケットを必要とする地点の数
+    private int inFlight = 0;
+    private int attemptsLeft = 0;
+
+    public SafeSpawnPool(JavaPlugin plugin, World world, Function<World, int[]> coordinatePicker,
+                         SafeSpawnSearcher searcher, Predicate<Location> recheck,
+                         int targetSize, int lowWaterMark) {
+        this.plugin = plugin;
+        this.world = world;
+        this.coordinatePicker = coordinatePicker;
+        this.searcher = searcher;
+        this.recheck = recheck;
+        this.targetSize = Math.max(1, targetSize);
+        this.lowWaterMark = Math.max(0, Math.min(lowWaterMark, this.targetSize - 1));
+    }
+
+    public boolean isFor(World other) {
+        return other != null && world.getUID().equals(other.getUID());
+    }
+
+    public int size() {
+        return pool.size();
+    }
+
+    /**
+     * プールから地点を1つ取り出す（空の場合は null）
+     * 取り出した地点は、読み込んだままのチャンク上で足場と空間を簡易的に再確認する。
+     */
+    public Location poll() {
+        Location location;
+        while ((location = pool.pollFirst()) != null) {
+            if (recheck.test(location)) {
+                // テレポート先として読み込まれている間はチケットを残す
+                releaseTicketLater(location);
+                break;
+            }
+            releaseTicket(location);
+        }
+        if (pool.size() <= lowWaterMark) {
+            refill();
+        }
+        return location;
+    }
+
+    /**
+     * 目標数に達するまで非同期で補充する
+     */
+    public void refill() {
+        if (attemptsLeft <= 0) {
+            attemptsLeft = (targetSize - pool.size()) * ATTEMPTS_PER_SLOT;
+        }
+        pump();
+    }
+
+    private void pump() {
+        while (inFlight < MAX_IN_FLIGHT && attemptsLeft > 0 && pool.size() + inFlight < targetSize) {
+            attemptsLeft--;
+            int[] coords = coordinatePicker.apply(world);
+            inFlight++;
+            searcher.search(world, coords[0], coords[1]).whenComplete((candidate, throwable) -> {
+                if (throwable != null) {
+                    plugin.getLogger().log(Level.FINE, "スポーン候補の探索に失敗しました", throwable);
+                } else if (candidate != null) {
+                    admit(candidate);
+                    return;
+                }
+                inFlight--;
+                if (plugin.isEnabled()) {
+                    pump();
+                }
+            });
+        }
+        if (attemptsLeft <= 0 && inFlight == 0 && pool.size() < targetSize) {
+            plugin.getLogger().fine(String.format("スポーン地点プールの補充を打ち切りました (size=%d/%d)", pool.size(), targetSize));
+        }
+    }
+
+    /**
+     * プールを空にし、解放待ちを含めてこのワールドのチケットをすべて外す（onDisable 用）
+     */
+    public void clear() {
+        pool.clear();
+        ticketHolds.clear();
+        world.removePluginChunkTickets(plugin);
+    }
+
+    // 候補のチャンクを非同期で読み込み直し（キャッシュ由来の候補や探索後に解放されたチャンク）、
+    // 再確認してからチケットを付けてプールに加える
+    private void admit(Location candidate) {
+        int chunkX = candidate.getBlockX() >> 4;
+        int chunkZ = candidate.getBlockZ() >> 4;
+        world.getChunkAtAsync(chunkX, chunkZ).whenComplete((chunk, throwable) -> {
+            inFlight--;
+            if (throwable != null) {
+                plugin.getLogger().log(Level.FINE, "スポーン候補のチャンクの読み込みに失敗しました", throwable);
+            } else if (plugin.isEnabled() && pool.size() < targetSize && recheck.test(candidate)) {
+                acquireTicket(chunkX, chunkZ);
+                pool.addLast(candidate);
+            }
+            if (plugin.isEnabled()) {
+                pump();
+            }
+        });
+    }
+
+    // チケットはチャンクごとに1つしか付かないため、同じチャンクを参照する地点の数を数えて最後に外す
+    private void acquireTicket(int chunkX, int chunkZ) {
+        if (ticketHolds.merge(chunkKey(chunkX, chunkZ), 1, Integer::sum) == 1) {
+            world.addPluginChunkTicket(chunkX, chunkZ, plugin);
+        }
+    }
+
+    private void releaseTicketLater(Location location) {
+        if (plugin.isEnabled()) {
+            Bukkit.getScheduler().runTaskLater(plugin, () -> releaseTicket(location), TICKET_RELEASE_DELAY_TICKS);
+        } else {
+            releaseTicket(location);
+        }
+    }
+
+    private void releaseTicket(Location location) {
+        int chunkX = location.getBlockX() >> 4;
+        int chunkZ = location.getBlockZ() >> 4;
+        if (ticketHolds.merge(chunkKey(chunkX, chunkZ), -1, Integer::sum) <= 0) {
+            ticketHolds.remove(chunkKey(chunkX, chunkZ));
+            world.removePluginChunkTicket(chunkX, chunkZ, plugin);
+        }
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+}
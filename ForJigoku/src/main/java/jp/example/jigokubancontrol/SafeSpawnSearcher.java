@@ -0,0 +1,143 @@
+package jp.example.jigokubancontrol;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * ChunkSnapshot を用いた非同期のスポーン地点探索
+ * 候補チャンクを getChunkAtAsync で読み込み、不変のスナップショットに対して安全性判定を
+ * 非同期スレッドで行う。結果の Future はメインスレッドで完了する。
+ * 評価結果は SpawnRegionCache にチャンク単位で記録する。
+ */
+public class SafeSpawnSearcher {
+
+    // 要求された柱で見つからない場合に試すチャンク内の柱（ローカル座標）
+    private static final int[][] FALLBACK_COLUMNS = {{8, 8}, {4, 4}, {4, 11}, {11, 4}, {11, 11}};
+
+    private final JavaPlugin plugin;
+    private final SpawnSafety safety;
+    private final SpawnRegionCache cache;
+
+    public SafeSpawnSearcher(JavaPlugin plugin, SpawnSafety safety, SpawnRegionCache cache) {
+        this.plugin = plugin;
+        this.safety = safety;
+        this.cache = cache;
+    }
+
+    /**
+     * 座標 (x, z) を含むチャンクを評価する。安全な地点が無い場合は null で完了する。
+     * 周囲チェックがチャンク外に及ばないよう、座標はチャンク内側に寄せて評価する。
+     * キャッシュ済みのチャンクはチャンクを読み込まずに即座に完了する。
+     */
+    public CompletableFuture<Location> search(World world, int x, int z) {
+        int bx = toChunkInterior(x);
+        int bz = toChunkInterior(z);
+        int chunkX = bx >> 4;
+        int chunkZ = bz >> 4;
+        boolean cached = cache != null && cache.isFor(world);
+        if (cached) {
+            SpawnRegionCache.Entry entry = cache.get(chunkX, chunkZ);
+            if (entry != null) {
+                return CompletableFuture.completedFuture(entry.isSafe()
+                    ? insideBorder(world, entry.blockX(chunkX), entry.y(), entry.blockZ(chunkZ))
+                    : null);
+            }
+            cache.beginEvaluation(chunkX, chunkZ);
+        }
+
+        CompletableFuture<Location> result = new CompletableFuture<>();
+        world.getChunkAtAsync(chunkX, chunkZ).whenComplete((chunk, throwable) -> {
+            if (throwable != null) {
+                if (cached) {
+                    cache.abortEvaluation(chunkX, chunkZ);
+                }
+                result.completeExceptionally(throwable);
+                return;
+            }
+            // スナップショットの取得とワールド情報の読み取りはメインスレッドで行う
+            ChunkSnapshot snapshot = chunk.getChunkSnapshot(true, false, false);
+            boolean nether = world.getEnvironment() == World.Environment.NETHER;
+            int seaLevel = world.getSeaLevel();
+            int minY = world.getMinHeight();
+            int maxY = world.getMaxHeight();
+
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+                int[] found;
+                try {
+                    SpawnSafety.BlockTypes blocks = (wx, wy, wz) ->
+                        (wy < minY || wy >= maxY) ? Material.AIR : snapshot.getBlockType(wx & 15, wy, wz & 15);
+                    found = evaluateChunk(blocks, snapshot, nether, seaLevel, bx, bz);
+                } catch (RuntimeException e) {
+                    runOnMainThread(() -> {
+                        if (cached) {
+                            cache.abortEvaluation(chunkX, chunkZ);
+                        }
+                        result.completeExceptionally(e);
+                    });
+                    return;
+                }
+                // テレポートなどの後続処理のためメインスレッドで完了させる
+                runOnMainThread(() -> {
+                    if (found == null) {
+                        if (cached) {
+                            cache.recordUnsafe(chunkX, chunkZ);
+                        }
+                        result.complete(null);
+                        return;
+                    }
+                    if (cached) {
+                        cache.record(chunkX, chunkZ, found[0], found[1], found[2]);
+                    }
+                    result.complete(insideBorder(world, found[0], found[1], found[2]));
+                });
+            });
+        });
+        return result;
+    }
+
+    // 要求された柱、続いてチャンク内の代表的な柱を評価し、最初に見つかった地点 {x, y, z} を返す
+    private int[] evaluateChunk(SpawnSafety.BlockTypes blocks, ChunkSnapshot snapshot, boolean nether,
+                                int seaLevel, int bx, int bz) {
+        int y = evaluateColumn(blocks, snapshot, nether, seaLevel, bx, bz);
+        if (y != SpawnSafety.NOT_FOUND) {
+            return new int[]{bx, y, bz};
+        }
+        for (int[] column : FALLBACK_COLUMNS) {
+            int cx = (bx & ~15) | column[0];
+            int cz = (bz & ~15) | column[1];
+            y = evaluateColumn(blocks, snapshot, nether, seaLevel, cx, cz);
+            if (y != SpawnSafety.NOT_FOUND) {
+                return new int[]{cx, y, cz};
+            }
+        }
+        return null;
+    }
+
+    private int evaluateColumn(SpawnSafety.BlockTypes blocks, ChunkSnapshot snapshot, boolean nether,
+                               int seaLevel, int x, int z) {
+        return nether
+            ? safety.findSafeNetherY(blocks, x, z)
+            : safety.findSafeNormalY(blocks, snapshot.getHighestBlockYAt(x & 15, z & 15), seaLevel, x, z);
+    }
+
+    private static Location insideBorder(World world, int x, int y, int z) {
+        Location candidate = new Location(world, x + 0.5, y, z + 0.5);
+        return world.getWorldBorder().isInside(candidate) ? candidate : null;
+    }
+
+    private void runOnMainThread(Runnable task) {
+        if (plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, task);
+        }
+    }
+
+    private static int toChunkInterior(int coordinate) {
+        return (coordinate & ~15) | Math.max(2, Math.min(13, coordinate & 15));
+    }
+}
@@ -0,0 +1,264 @@
+package jp.example.jigokubancontrol;
+
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockIgniteEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.player.PlayerBucketEmptyEvent;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * チャンク単位のスポーン安全性キャッシュ
+ * 評価済みチャンクごとに「安全な地点（柱の位置と高さ）」または「安全な地点なし」を記録し、
+ * 同じ領域の再評価やチャンク読み込みを省略する。チャンク内のブロック変化で破棄され、
+ * 停止時に spawn-cache.bin へ保存して再起動後も引き継ぐ。
+ * 操作はすべてメインスレッドで行う。
+ */
+public class SpawnRegionCache implements Listener {
+
+    private static final int MAGIC = 0x53504331; // "SPC1"
+    private static final int VERSION = 1;
+    private static final short UNSAFE_Y = Short.MIN_VALUE;
+
+    private final JavaPlugin plugin;
+    private final World world;
+    private final Path file;
+    private final Map<Long, Entry> entries;
+    // 評価中に無効化されたチャンクの結果を記録しないための集合
+    private final Set<Long> evaluating = new HashSet<>();
+    private long hits = 0;
+    private long misses = 0;
+
+    public SpawnRegionCache(JavaPlugin plugin, World world, int maxEntries) {
+        this.plugin = plugin;
+        this.world = world;
+        this.file = plugin.getDataFolder().toPath().resolve("spawn-cache.bin");
+        int limit = Math.max(1, maxEntries);
+        // 挿入順で古いものから捨てる
+        this.entries = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > limit;
+            }
+        };
+    }
+
+    /** キャッシュ済みの判定結果 */
+    public static final class Entry {
+        final int localX;
+        final int localZ;
+        final int y;
+
+        Entry(int localX, int localZ, int y) {
+            this.localX = localX;
+            this.localZ = localZ;
+            this.y = y;
+        }
+
+        public boolean isSafe() {
+            return y != UNSAFE_Y;
+        }
+
+        /** 安全な地点のワールド座標（足の位置） */
+        public int blockX(int chunkX) {
+            return (chunkX << 4) | localX;
+        }
+
+        public int blockZ(int chunkZ) {
+            return (chunkZ << 4) | localZ;
+        }
+
+        public int y() {
+            return y;
+        }
+    }
+
+    public boolean isFor(World other) {
+        return other != null && world.getUID().equals(other.getUID());
+    }
+
+    public Entry get(int chunkX, int chunkZ) {
+        Entry entry = entries.get(chunkKey(chunkX, chunkZ));
+        if (entry != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return entry;
+    }
+
+    /** チャンクのスナップショットを取得する直前に呼び出す */
+    public void beginEvaluation(int chunkX, int chunkZ) {
+        evaluating.add(chunkKey(chunkX, chunkZ));
+    }
+
+    /** 評価結果を記録する。評価中にチャンクが変化していた場合は記録しない */
+    public void record(int chunkX, int chunkZ, int blockX, int y, int blockZ) {
+        long key = chunkKey(chunkX, chunkZ);
+        if (!evaluating.remove(key)) {
+            return;
+        }
+        entries.put(key, new Entry(blockX & 15, blockZ & 15, y));
+    }
+
+    public void recordUnsafe(int chunkX, int chunkZ) {
+        long key = chunkKey(chunkX, chunkZ);
+        if (!evaluating.remove(key)) {
+            return;
+        }
+        entries.put(key, new Entry(0, 0, UNSAFE_Y));
+    }
+
+    /** 評価が失敗した場合に呼び出す */
+    public void abortEvaluation(int chunkX, int chunkZ) {
+        evaluating.remove(chunkKey(chunkX, chunkZ));
+    }
+
+    public void invalidate(int chunkX, int chunkZ) {
+        long key = chunkKey(chunkX, chunkZ);
+        entries.remove(key);
+        evaluating.remove(key);
+    }
+
+    private void invalidate(Block block) {
+        if (block != null && isFor(block.getWorld())) {
+            invalidate(block.getX() >> 4, block.getZ() >> 4);
+        }
+    }
+
+    private void invalidate(List<Block> blocks) {
+        for (Block block : blocks) {
+            invalidate(block);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBurn(BlockBurnEvent event) {
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockIgnite(BlockIgniteEvent event) {
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFromTo(BlockFromToEvent event) {
+        invalidate(event.getToBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBucketEmpty(PlayerBucketEmptyEvent event) {
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        invalidate(event.getBlock());
+        invalidate(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        invalidate(event.blockList());
+    }
+
+    /**
+     * spawn-cache.bin を読み込む。別ワールドのキャッシュや破損したファイルは無視する。
+     */
+    public void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+                plugin.getLogger().warning("spawn-cache.bin の形式が不正なため破棄します。");
+                return;
+            }
+            UUID worldId = new UUID(in.readLong(), in.readLong());
+            if (!worldId.equals(world.getUID())) {
+                plugin.getLogger().info("spawn-cache.bin は別のワールドのものなので破棄します。");
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long key = in.readLong();
+                int column = in.readUnsignedByte();
+                short y = in.readShort();
+                entries.put(key, new Entry(column >> 4, column & 15, y));
+            }
+            plugin.getLogger().info(String.format("スポーン安全性キャッシュを読み込みました (%d チャンク)", entries.size()));
+        } catch (EOFException e) {
+            plugin.getLogger().warning(String.format("spawn-cache.bin が途中で切れています。読み込めた %d チャンク分のみ使用します。", entries.size()));
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "spawn-cache.bin の読み込みに失敗しました。", e);
+        }
+    }
+
+    /**
+     * 一時ファイルに書き出してから置き換える
+     */
+    public void save() {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeLong(world.getUID().getMostSignificantBits());
+                out.writeLong(world.getUID().getLeastSignificantBits());
+                out.writeInt(entries.size());
+                for (Map.Entry<Long, Entry> e : entries.entrySet()) {
+                    Entry entry = e.getValue();
+                    out.writeLong(e.getKey());
+                    out.writeByte((entry.localX << 4) | entry.localZ);
+                    out.writeShort(entry.y);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            plugin.getLogger().info(String.format("スポーン安全性キャッシュを保存しました (%d チャンク, hit=%d miss=%d)",
+                entries.size(), hits, misses));
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "spawn-cache.bin の保存に失敗しました。", e);
+        }
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,256 @@
+package jp.example.jigokubancontrol;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * スポーン地点の安全性判定
+ * ブロックの参照方法（ワールド直接／ChunkSnapshot）に依存しないため、非同期スレッドからも利用できる。
+ * マテリアルの分類は起動時に一度だけ表に展開し、判定は配列参照のみで行う。
+ */
+public class SpawnSafety {
+
+    /** 判定に使用するワールド座標のブロック種別を返す */
+    public interface BlockTypes {
+        Material get(int x, int y, int z);
+    }
+
+    /** 見つからなかった場合の戻り値 */
+    public static final int NOT_FOUND = Integer.MIN_VALUE;
+
+    // Material.ordinal() を添字とする分類表（構築後は読み取り専用）
+    private final boolean[] safeToStand;
+    private final boolean[] solidGround;
+    private final boolean[] dangerous;
+    private final boolean[] immediateHazard;
+    private final boolean[] nearbyHazard;
+    private final boolean[] fallingHazard;
+
+    /**
+     * Material.values() から分類表を構築する
+     *
+     * @param section config.yml の spawn-safety セクション（null可）。追加のマテリアルを指定できる
+     * @param logger  不明なマテリアル名の警告出力先
+     */
+    public SpawnSafety(ConfigurationSection section, Logger logger) {
+        Material[] materials = Material.values();
+        safeToStand = new boolean[materials.length];
+        solidGround = new boolean[materials.length];
+        dangerous = new boolean[materials.length];
+        immediateHazard = new boolean[materials.length];
+        nearbyHazard = new boolean[materials.length];
+        fallingHazard = new boolean[materials.length];
+        for (Material material : materials) {
+            if (material.isLegacy()) {
+                continue;
+            }
+            int i = material.ordinal();
+            safeToStand[i] = classifySafeToStand(material);
+            solidGround[i] = classifySolidGround(material);
+            dangerous[i] = classifyDangerous(material);
+            immediateHazard[i] = classifyImmediateHazard(material);
+            nearbyHazard[i] = classifyNearbyHazard(material);
+            fallingHazard[i] = classifyFallingHazard(material);
+        }
+
+        if (section != null) {
+            for (Material material : resolve(section.getStringList("extra-dangerous"), logger)) {
+                dangerous[material.ordinal()] = true;
+                nearbyHazard[material.ordinal()] = true;
+                safeToStand[material.ordinal()] = false;
+            }
+            for (Material material : resolve(section.getStringList("extra-unsafe-ground"), logger)) {
+                solidGround[material.ordinal()] = false;
+            }
+            for (Material material : resolve(section.getStringList("extra-falling-hazard"), logger)) {
+                fallingHazard[material.ordinal()] = true;
+            }
+            for (Material material : resolve(section.getStringList("extra-passable"), logger)) {
+                safeToStand[material.ordinal()] = true;
+            }
+        }
+    }
+
+    private static List<Material> resolve(List<String> names, Logger logger) {
+        List<Material> materials = new ArrayList<>();
+        for (String name : names) {
+            Material material = Material.matchMaterial(name);
+            if (material == null) {
+                logger.warning("spawn-safety に不明なマテリアルが指定されています: " + name);
+            } else {
+                materials.add(material);
+            }
+        }
+        return materials;
+    }
+
+    /**
+     * 通常ワールドで (x, z) の柱に立てる高さ（足の位置）を返す
+     */
+    public int findSafeNormalY(BlockTypes blocks, int highestY, int seaLevel, int x, int z) {
+        int y = highestY;
+        // 海面より低い場合は、海面まで引き上げる
+        if (y < seaLevel) {
+            y = seaLevel;
+        }
+
+        for (int i = 0; i < 10; i++) { // 10回試行
+            Material ground = blocks.get(x, y, z);
+            Material feet = blocks.get(x, y + 1, z);
+            Material head = blocks.get(x, y + 2, z);
+
+            if (isSolidGround(ground) && !isDangerousBlock(ground) && isSafeToStand(feet) && isSafeToStand(head) && isSurroundingSafe(blocks, x, y + 1, z)) {
+                return y + 1;
+            }
+            y++; // 少し上にずらして再試行
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * ネザーで (x, z) の柱に立てる高さ（足の位置）を返す
+     */
+    public int findSafeNetherY(BlockTypes blocks, int x, int z) {
+        // 32から100の間で安全な場所を探す
+        for (int y = 32; y < 100; y++) {
+            Material feetMaterial = blocks.get(x, y, z);
+            Material headMaterial = blocks.get(x, y + 1, z);
+            Material groundMaterial = blocks.get(x, y - 1, z);
+
+            // 2ブロックの空間があり、足元が固体ブロックであること
+            if (isSafeToStand(feetMaterial) && isSafeToStand(headMaterial) && isSolidGround(groundMaterial) && !isDangerousBlock(groundMaterial)) {
+                if (isSurroundingSafe(blocks, x, y, z)) {
+                    return y;
+                }
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * 足場と2ブロックの空間のみを確認する簡易チェック
+     */
+    public boolean isStandable(BlockTypes blocks, int x, int y, int z) {
+        Material ground = blocks.get(x, y - 1, z);
+        return isSolidGround(ground) && !isDangerousBlock(ground)
+            && isSafeToStand(blocks.get(x, y, z))
+            && isSafeToStand(blocks.get(x, y + 1, z));
+    }
+
+    // プレイヤーが立てる空間かチェック（改善版）
+    public boolean isSafeToStand(Material material) {
+        return safeToStand[material.ordinal()];
+    }
+
+    // 固体の地面かチェック（改善版）
+    public boolean isSolidGround(Material material) {
+        return solidGround[material.ordinal()];
+    }
+
+    // 危険なブロックかチェック（改善版）
+    public boolean isDangerousBlock(Material material) {
+        return dangerous[material.ordinal()];
+    }
+
+    private static boolean classifySafeToStand(Material material) {
+        return material.isAir() ||
+               material == Material.CAVE_AIR ||
+               material == Material.VOID_AIR ||
+               material == Material.TALL_GRASS ||
+               material == Material.FERN ||
+               material == Material.LARGE_FERN ||
+               material == Material.DEAD_BUSH ||
+               material == Material.VINE ||
+               material == Material.SUGAR_CANE ||
+               material == Material.WHEAT ||
+               material == Material.CARROTS ||
+               material == Material.POTATOES ||
+               material == Material.BEETROOTS ||
+               (!material.isSolid() && !material.name().contains("WATER") && !material.name().contains("LAVA"));
+    }
+
+    private static boolean classifySolidGround(Material material) {
+        return material.isSolid() &&
+               material != Material.BARRIER &&
+               material != Material.BEDROCK && // ベッドロックの上は避ける（奈落の可能性）
+               !material.name().contains("SIGN") &&
+               !material.name().contains("BANNER") &&
+               !material.name().contains("DOOR") &&
+               !material.name().contains("GATE") &&
+               !material.name().contains("TRAPDOOR") &&
+               !material.name().contains("SLAB") && // ハーフブロックは避ける
+               !material.name().contains("STAIRS"); // 階段も避ける
+    }
+
+    private static boolean classifyDangerous(Material material) {
+        return material == Material.LAVA ||
+               material == Material.WATER ||
+               material == Material.FIRE ||
+               material == Material.SOUL_FIRE ||
+               material == Material.CAMPFIRE ||
+               material == Material.SOUL_CAMPFIRE ||
+               material == Material.MAGMA_BLOCK ||
+               material == Material.SWEET_BERRY_BUSH ||
+               material == Material.WITHER_ROSE ||
+               material == Material.CACTUS ||
+               material == Material.POWDER_SNOW ||
+               material == Material.POINTED_DRIPSTONE ||
+               material.name().contains("PRESSURE_PLATE") ||
+               material.name().contains("TRIPWIRE") ||
+               material.name().contains("TNT") ||
+               material.name().contains("PISTON") ||
+               material.name().contains("OBSERVER");
+    }
+
+    // 即座に危険なブロック（周囲5x5x3）
+    private static boolean classifyImmediateHazard(Material material) {
+        return material == Material.LAVA || material == Material.FIRE || material == Material.SOUL_FIRE;
+    }
+
+    // 近くにあると危険なブロック（周囲3x3x3）
+    private static boolean classifyNearbyHazard(Material material) {
+        return material == Material.CACTUS || material == Material.SWEET_BERRY_BUSH ||
+               material == Material.WITHER_ROSE || material == Material.MAGMA_BLOCK ||
+               material == Material.CAMPFIRE || material == Material.SOUL_CAMPFIRE;
+    }
+
+    // 頭上から落下してくる可能性のあるブロック
+    private static boolean classifyFallingHazard(Material material) {
+        return material == Material.SAND || material == Material.GRAVEL ||
+               material == Material.ANVIL || material == Material.POINTED_DRIPSTONE ||
+               material.name().contains("CONCRETE_POWDER");
+    }
+
+    // 周囲の安全性をチェック（改善版）
+    public boolean isSurroundingSafe(BlockTypes blocks, int x, int y, int z) {
+        // 5x5x3の範囲で危険なブロックがないかチェック
+        for (int dx = -2; dx <= 2; dx++) {
+            for (int dz = -2; dz <= 2; dz++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    int ordinal = blocks.get(x + dx, y + dy, z + dz).ordinal();
+                    // 即座に危険なブロック
+                    if (immediateHazard[ordinal]) {
+                        return false;
+                    }
+                    // 近くにあると危険なブロック
+                    if (Math.abs(dx) <= 1 && Math.abs(dz) <= 1 && nearbyHazard[ordinal]) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        // 上方向の安全性（落下物チェック）
+        for (int dy = 2; dy <= 5; dy++) {
+            if (fallingHazard[blocks.get(x, y + dy, z).ordinal()]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
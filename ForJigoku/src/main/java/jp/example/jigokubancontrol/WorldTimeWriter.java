@@ -0,0 +1,171 @@
+package jp.example.jigokubancontrol;
+
+import jp.example.common.AsyncDatabase;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * world_times への書き込みを AsyncDatabase 上で行うライトビハインド方式のライター
+ * ワールドごとに最新の未送信値のみを保持し（新しい値が未送信の値を上書きする）、
+ * 前回書き込んだ値から変化が無い場合は書き込みを省略する。
+ * 書き込み処理は同時に1つだけ実行し、1つの接続と PreparedStatement で溜まった分をまとめて書き込む。
+ */
+public class WorldTimeWriter {
+
+    private static final String UPSERT_QUERY =
+        "INSERT INTO world_times (world_name, time, is_night) VALUES (?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE time = VALUES(time), is_night = VALUES(is_night)";
+
+    private final JavaPlugin plugin;
+    private final AsyncDatabase database;
+    private final Map<String, Sample> pending = new ConcurrentHashMap<>();
+    private final Map<String, Sample> lastWritten = new ConcurrentHashMap<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong skippedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    public WorldTimeWriter(JavaPlugin plugin, AsyncDatabase database) {
+        this.plugin = plugin;
+        this.database = database;
+    }
+
+    /**
+     * 書き込み要求を登録する（メインスレッドから呼び出してもブロックしない）
+     */
+    public void submit(String worldName, long time, boolean isNight) {
+        if (pending.put(worldName, new Sample(time, isNight)) != null) {
+            coalescedCount.incrementAndGet();
+        }
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (!drainScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        database.withConnection(this::drain).whenComplete((ignored, error) -> {
+            if (error != null) {
+                // 接続を取得できなかった（値は pending に残っている）。次の書き込み要求で再試行する
+                drainScheduled.set(false);
+                plugin.getLogger().log(Level.WARNING, "MySQLへの時刻情報の更新に失敗しました。HikariCPが自動的に再接続を試みます。", error);
+            }
+        });
+    }
+
+    private Void drain(Connection conn) throws SQLException {
+        Map<String, Sample> failed = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(UPSERT_QUERY)) {
+            // 書き込み中に届いた値も同じ接続で書き込む（別の書き込み処理は起こさない）
+            do {
+                drain(stmt, failed);
+                drainScheduled.set(false);
+            } while (!pending.isEmpty() && drainScheduled.compareAndSet(false, true));
+        } finally {
+            // より新しい値が届いていなければ次回の書き込みで再試行する
+            failed.forEach((worldName, sample) -> {
+                if (pending.putIfAbsent(worldName, sample) != null) {
+                    droppedCount.incrementAndGet();
+                }
+            });
+        }
+        return null;
+    }
+
+    private void drain(PreparedStatement stmt, Map<String, Sample> failed) {
+        for (String worldName : pending.keySet()) {
+            Sample sample = pending.remove(worldName);
+            if (sample == null) {
+                continue;
+            }
+            if (sample.equals(lastWritten.get(worldName))) {
+                skippedCount.incrementAndGet();
+                continue;
+            }
+            try {
+                write(stmt, worldName, sample);
+                lastWritten.put(worldName, sample);
+                writtenCount.incrementAndGet();
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.WARNING, "MySQLへの時刻情報の更新に失敗しました。HikariCPが自動的に再接続を試みます。", e);
+                failed.put(worldName, sample);
+            }
+        }
+    }
+
+    private void write(PreparedStatement stmt, String worldName, Sample sample) throws SQLException {
+        stmt.setString(1, worldName);
+        stmt.setLong(2, sample.time);
+        stmt.setBoolean(3, sample.isNight);
+        stmt.executeUpdate();
+    }
+
+    /**
+     * 未送信の値の書き込みを開始する（停止時。完了は AsyncDatabase#close で待つ）
+     */
+    public void flush() {
+        if (!pending.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * 書き込めなかった値を破棄し、統計を出力する（AsyncDatabase#close の後に呼ぶ）
+     */
+    public void logStats() {
+        droppedCount.addAndGet(pending.size());
+        pending.clear();
+        plugin.getLogger().info(String.format("world_times書き込み統計: written=%d coalesced=%d skipped=%d dropped=%d",
+            getWrittenCount(), getCoalescedCount(), getSkippedCount(), getDroppedCount()));
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private static final class Sample {
+        final long time;
+        final boolean isNight;
+
+        Sample(long time, boolean isNight) {
+            this.time = time;
+            this.isNight = isNight;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Sample)) return false;
+            Sample other = (Sample) o;
+            return time == other.time && isNight == other.isNight;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(time) * 31 + (isNight ? 1 : 0);
+        }
+    }
+}
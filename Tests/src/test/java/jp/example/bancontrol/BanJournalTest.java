@@ -0,0 +1,196 @@
+package jp.example.bancontrol;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BanJournal のスナップショット・ジャーナル再生（途中で停止した場合を含む）
+ * close() を呼ばずに別のインスタンスで load() することで、プロキシの異常終了を再現する。
+ */
+class BanJournalTest {
+
+    private static final UUID ALICE = UUID.fromString("00000000-0000-0000-0000-00000000000a");
+    private static final UUID BOB = UUID.fromString("00000000-0000-0000-0000-00000000000b");
+    private static final UUID CAROL = UUID.fromString("00000000-0000-0000-0000-00000000000c");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysJournalAfterCrash() {
+        BanJournal journal = open(new ConcurrentHashMap<>());
+        journal.put(ALICE, ban(1000L, "alice"));
+        journal.put(BOB, ban(2000L, "bob"));
+        journal.put(ALICE, ban(3000L, "alice"));
+        assertTrue(journal.remove(BOB));
+
+        Map<UUID, BanInfo> restored = reload();
+        assertEquals(Set.of(ALICE), restored.keySet());
+        assertBan(restored.get(ALICE), 3000L, "alice");
+    }
+
+    @Test
+    void restoresFromSnapshotAfterClose() throws IOException {
+        BanJournal journal = open(new ConcurrentHashMap<>());
+        journal.put(ALICE, ban(1000L, "alice"));
+        journal.put(BOB, ban(2000L, "bob"));
+        journal.close();
+
+        assertTrue(Files.exists(dir.resolve("bans.json")));
+        assertFalse(Files.exists(dir.resolve("bans.journal")));
+        Map<UUID, BanInfo> restored = reload();
+        assertEquals(Set.of(ALICE, BOB), restored.keySet());
+        assertBan(restored.get(BOB), 2000L, "bob");
+    }
+
+    @Test
+    void dropsPartiallyWrittenLastRecord() throws IOException {
+        BanJournal journal = open(new ConcurrentHashMap<>());
+        journal.put(ALICE, ban(1000L, "alice"));
+        journal.put(BOB, ban(2000L, "bob"));
+
+        // 最後のレコードの書き込み途中で停止した状態にする
+        Path file = dir.resolve("bans.journal");
+        truncate(file, Files.size(file) - 3);
+
+        Map<UUID, BanInfo> restored = reload();
+        assertEquals(Set.of(ALICE), restored.keySet());
+        assertBan(restored.get(ALICE), 1000L, "alice");
+    }
+
+    @Test
+    void appendsAfterPartialRecordAreReplayed() throws IOException {
+        BanJournal journal = open(new ConcurrentHashMap<>());
+        journal.put(ALICE, ban(1000L, "alice"));
+        journal.put(BOB, ban(2000L, "bob"));
+        Path file = dir.resolve("bans.journal");
+        truncate(file, Files.size(file) - 3);
+
+        // 復元後の追記が不完全なレコードの後ろに続いても、次回の再生で読めること
+        Map<UUID, BanInfo> banMap = new ConcurrentHashMap<>();
+        BanJournal recovered = open(banMap);
+        recovered.load();
+        recovered.put(CAROL, ban(4000L, "carol"));
+
+        Map<UUID, BanInfo> restored = reload();
+        assertEquals(Set.of(ALICE, CAROL), restored.keySet());
+        assertBan(restored.get(CAROL), 4000L, "carol");
+    }
+
+    @Test
+    void ignoresJournalWithWrongHeader() throws IOException {
+        Files.write(dir.resolve("bans.journal"), new byte[]{1, 2, 3, 4, 5, 6});
+        assertTrue(reload().isEmpty());
+    }
+
+    @Test
+    void replaysRotatedJournalBeforeCurrentOne() throws IOException {
+        // 圧縮中に停止した状態: bans.journal.old（古い）と bans.journal（新しい）が両方ある
+        BanJournal before = open(new ConcurrentHashMap<>());
+        before.put(ALICE, ban(1000L, "alice"));
+        before.put(BOB, ban(2000L, "bob"));
+        Files.move(dir.resolve("bans.journal"), dir.resolve("bans.journal.old"));
+
+        BanJournal after = open(new ConcurrentHashMap<>());
+        after.put(ALICE, ban(5000L, "alice"));
+
+        Map<UUID, BanInfo> banMap = new ConcurrentHashMap<>();
+        BanJournal journal = open(banMap);
+        journal.load();
+        assertEquals(Set.of(ALICE, BOB), banMap.keySet());
+        assertBan(banMap.get(ALICE), 5000L, "alice");
+
+        // 読み込み時に開始される圧縮の後も内容が変わらないこと
+        journal.close();
+        assertFalse(Files.exists(dir.resolve("bans.journal.old")));
+        Map<UUID, BanInfo> restored = reload();
+        assertEquals(Set.of(ALICE, BOB), restored.keySet());
+        assertBan(restored.get(ALICE), 5000L, "alice");
+    }
+
+    @Test
+    void keepsUnsyncedRemovalsAcrossRestarts() {
+        BanJournal journal = open(new ConcurrentHashMap<>());
+        journal.put(ALICE, ban(1000L, "alice"));
+        journal.put(BOB, ban(2000L, "bob"));
+        assertTrue(journal.removeUnsynced(ALICE));
+        assertTrue(journal.removeUnsynced(BOB));
+        assertFalse(journal.removeUnsynced(CAROL));
+        journal.markSynced(BOB);
+
+        // 異常終了後（ジャーナルの再生）
+        BanJournal crashed = open(new ConcurrentHashMap<>());
+        crashed.load();
+        assertEquals(Set.of(ALICE), crashed.unsyncedRemovals());
+
+        // 正常終了後（スナップショット）
+        crashed.close();
+        BanJournal restarted = open(new ConcurrentHashMap<>());
+        restarted.load();
+        assertEquals(Set.of(ALICE), restarted.unsyncedRemovals());
+
+        // 再度BANされた場合は未同期の解除ではなくなる
+        restarted.put(ALICE, ban(3000L, "alice"));
+        assertTrue(restarted.unsyncedRemovals().isEmpty());
+        restarted.close();
+        assertFalse(Files.exists(dir.resolve("bans.unsynced.json")));
+    }
+
+    @Test
+    void removeOnlyMatchingBan() {
+        Map<UUID, BanInfo> banMap = new ConcurrentHashMap<>();
+        BanJournal journal = open(banMap);
+        BanInfo first = ban(1000L, "alice");
+        journal.put(ALICE, first);
+        journal.put(ALICE, ban(2000L, "alice"));
+
+        // 置き換えられたBANの期限切れでは解除しない
+        assertFalse(journal.remove(ALICE, first));
+        assertNotNull(banMap.get(ALICE));
+        assertBan(reload().get(ALICE), 2000L, "alice");
+    }
+
+    private BanJournal open(Map<UUID, BanInfo> banMap) {
+        return new BanJournal(banMap, dir, new ObjectMapper(), NOPLogger.NOP_LOGGER);
+    }
+
+    // 別のインスタンスで読み込み直す（書き込み側は閉じない）
+    private Map<UUID, BanInfo> reload() {
+        Map<UUID, BanInfo> banMap = new ConcurrentHashMap<>();
+        open(banMap).load();
+        return banMap;
+    }
+
+    private static BanInfo ban(long unbanTime, String username) {
+        return new BanInfo(unbanTime, BanInfo.Reason.DEATH, username);
+    }
+
+    private static void assertBan(BanInfo info, long unbanTime, String username) {
+        assertNotNull(info);
+        assertEquals(unbanTime, info.unbanTime);
+        assertEquals(BanInfo.Reason.DEATH, info.reason);
+        assertEquals(username, info.username);
+    }
+
+    private static void truncate(Path file, long length) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(length);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package jp.example.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * MessageEncoder / MessageDecoder の往復と、不正なメッセージの拒否
+ */
+class MessageCodecTest {
+
+    @Test
+    void roundTripsEveryFieldType() {
+        UUID uuid = UUID.randomUUID();
+        byte[] nested = MessageEncoder.of(Opcode.TIME_SYNC).writeVarLong(18000L).toByteArray();
+        byte[] message = MessageEncoder.of(Opcode.DEATH_NOTIFICATION)
+            .writeUuid(uuid)
+            .writeBoolean(true)
+            .writeBoolean(false)
+            .writeVarInt(300)
+            .writeVarLong(1L << 40)
+            .writeString("地獄で死亡しました")
+            .writeByteArray(nested)
+            .toByteArray();
+
+        MessageDecoder in = MessageDecoder.decode(message);
+        assertEquals(Opcode.DEATH_NOTIFICATION, in.opcode());
+        assertEquals(uuid, in.readUuid());
+        assertTrue(in.readBoolean());
+        assertFalse(in.readBoolean());
+        assertEquals(300, in.readVarInt());
+        assertEquals(1L << 40, in.readVarLong());
+        assertEquals("地獄で死亡しました", in.readString());
+        assertArrayEquals(nested, in.readByteArray());
+        assertEquals(0, in.remaining());
+    }
+
+    @Test
+    void roundTripsVarIntAndVarLongBoundaries() {
+        int[] ints = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+        long[] longs = {0L, 127L, 128L, Integer.MAX_VALUE + 1L, Long.MAX_VALUE, -1L, Long.MIN_VALUE};
+        MessageEncoder out = MessageEncoder.of(Opcode.HEARTBEAT);
+        for (int value : ints) {
+            out.writeVarInt(value);
+        }
+        for (long value : longs) {
+            out.writeVarLong(value);
+        }
+
+        MessageDecoder in = MessageDecoder.decode(out.toByteArray());
+        for (int value : ints) {
+            assertEquals(value, in.readVarInt());
+        }
+        for (long value : longs) {
+            assertEquals(value, in.readVarLong());
+        }
+        assertEquals(0, in.remaining());
+    }
+
+    @Test
+    void encodesSmallVarIntsInOneByte() {
+        byte[] message = MessageEncoder.of(Opcode.HEARTBEAT).writeVarInt(127).toByteArray();
+        assertEquals(Protocol.HEADER_SIZE + 1, message.length);
+        message = MessageEncoder.of(Opcode.HEARTBEAT).writeVarInt(128).toByteArray();
+        assertEquals(Protocol.HEADER_SIZE + 2, message.length);
+    }
+
+    @Test
+    void writesNullStringAsEmpty() {
+        byte[] message = MessageEncoder.of(Opcode.DEATH).writeString(null).toByteArray();
+        assertEquals("", MessageDecoder.decode(message).readString());
+    }
+
+    @Test
+    void acceptsStringAtMaxLength() {
+        String longest = "a".repeat(Protocol.MAX_STRING_BYTES);
+        byte[] message = MessageEncoder.of(Opcode.DEATH).writeString(longest).toByteArray();
+        assertEquals(longest, MessageDecoder.decode(message).readString());
+    }
+
+    @Test
+    void rejectsStringOverMaxLengthOnEncode() {
+        String tooLong = "a".repeat(Protocol.MAX_STRING_BYTES + 1);
+        assertThrows(ProtocolException.class, () -> MessageEncoder.of(Opcode.DEATH).writeString(tooLong));
+        // マルチバイト文字は UTF-8 のバイト数で数える
+        String tooLongUtf8 = "あ".repeat(Protocol.MAX_STRING_BYTES / 3 + 1);
+        assertThrows(ProtocolException.class, () -> MessageEncoder.of(Opcode.DEATH).writeString(tooLongUtf8));
+    }
+
+    @Test
+    void rejectsStringOverMaxLengthOnDecode() {
+        byte[] message = MessageEncoder.of(Opcode.DEATH).writeVarInt(Protocol.MAX_STRING_BYTES + 1).toByteArray();
+        assertThrows(ProtocolException.class, () -> MessageDecoder.decode(message).readString());
+    }
+
+    @Test
+    void rejectsNegativeLengths() {
+        byte[] string = MessageEncoder.of(Opcode.DEATH).writeVarInt(-1).toByteArray();
+        assertThrows(ProtocolException.class, () -> MessageDecoder.decode(string).readString());
+        byte[] bytes = MessageEncoder.of(Opcode.BATCH).writeVarInt(-1).toByteArray();
+        assertThrows(ProtocolException.class, () -> MessageDecoder.decode(bytes).readByteArray());
+    }
+
+    @Test
+    void rejectsOverlongVarInt() {
+        byte[] header = MessageEncoder.of(Opcode.HEARTBEAT).toByteArray();
+        byte[] varInt = withTrailer(header, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0x01);
+        assertThrows(ProtocolException.class, () -> MessageDecoder.decode(varInt).readVarInt());
+
+        byte[] varLong = Arrays.copyOf(header, header.length + 11);
+        Arrays.fill(varLong, header.length, varLong.length - 1, (byte) 0xFF);
+        varLong[varLong.length - 1] = 0x01;
+        assertThrows(ProtocolException.class, () -> MessageDecoder.decode(varLong).readVarLong());
+    }
+
+    @Test
+    void rejectsTruncatedFields() {
+        byte[] full = MessageEncoder.of(Opcode.GAMEMODE_UPDATE)
+            .writeUuid(UUID.randomUUID())
+            .writeString("SURVIVAL")
+            .toByteArray();
+        for (int length = Protocol.HEADER_SIZE; length < full.length; length++) {
+            byte[] truncated = Arrays.copyOf(full, length);
+            assertThrows(ProtocolException.class, () -> {
+                MessageDecoder in = MessageDecoder.decode(truncated);
+                in.readUuid();
+                in.readString();
+            }, "length=" + length);
+        }
+        // 継続ビットの立ったまま終わる VarInt
+        byte[] dangling = withTrailer(MessageEncoder.of(Opcode.HEARTBEAT).toByteArray(), (byte) 0x80);
+        assertThrows(ProtocolException.class, () -> MessageDecoder.decode(dangling).readVarInt());
+    }
+
+    @Test
+    void rejectsBadHeaders() {
+        assertThrows(ProtocolException.class, () -> MessageDecoder.decode(null));
+        assertThrows(ProtocolException.class, () -> MessageDecoder.decode(new byte[0]));
+        assertThrows(ProtocolException.class,
+            () -> MessageDecoder.decode(new byte[]{(byte) Protocol.MAGIC, (byte) Protocol.VERSION}));
+
+        byte[] wrongMagic = MessageEncoder.of(Opcode.HEARTBEAT).toByteArray();
+        wrongMagic[0] = 0x00;
+        assertThrows(ProtocolException.class, () -> MessageDecoder.decode(wrongMagic));
+
+        // 旧形式（UTF のサブチャンネル名で始まる）メッセージも拒否される
+        byte[] legacy = {0x00, 0x0D, 'j', 'i', 'g', 'o', 'k', 'u'};
+        assertThrows(ProtocolException.class, () -> MessageDecoder.decode(legacy));
+    }
+
+    @Test
+    void rejectsOtherProtocolVersions() {
+        byte[] older = MessageEncoder.of(Opcode.HEARTBEAT).writeVarInt(1).toByteArray();
+        older[1] = (byte) (Protocol.VERSION - 1);
+        assertThrows(ProtocolException.class, () -> MessageDecoder.decode(older));
+
+        byte[] newer = MessageEncoder.of(Opcode.HEARTBEAT).writeVarInt(1).toByteArray();
+        newer[1] = (byte) (Protocol.VERSION + 1);
+        assertThrows(ProtocolException.class, () -> MessageDecoder.decode(newer));
+    }
+
+    @Test
+    void keepsUnknownOpcodeId() {
+        byte[] message = {(byte) Protocol.MAGIC, (byte) Protocol.VERSION, (byte) 200};
+        MessageDecoder in = MessageDecoder.decode(message);
+        assertNull(in.opcode());
+        assertEquals(200, in.opcodeId());
+    }
+
+    @Test
+    void opcodeIdsRoundTrip() {
+        for (Opcode opcode : Opcode.values()) {
+            assertEquals(opcode, Opcode.fromId(opcode.id()));
+            assertEquals(opcode, MessageDecoder.decode(MessageEncoder.of(opcode).toByteArray()).opcode());
+        }
+        assertNull(Opcode.fromId(-1));
+        assertNull(Opcode.fromId(256));
+    }
+
+    private static byte[] withTrailer(byte[] header, byte... trailer) {
+        byte[] message = Arrays.copyOf(header, header.length + trailer.length);
+        System.arraycopy(trailer, 0, message, header.length, trailer.length);
+        return message;
+    }
+}
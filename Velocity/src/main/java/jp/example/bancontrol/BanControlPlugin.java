@@ -1,26 +1,33 @@
 package jp.example.bancontrol;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.io.ByteArrayDataOutput;
-import com.google.common.io.ByteArrayDataInput;
-import com.google.common.io.ByteStreams;
 import com.velocitypowered.api.command.SimpleCommand;
 import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.DisconnectEvent;
 import com.velocitypowered.api.event.connection.PluginMessageEvent;
 import com.velocitypowered.api.event.player.ServerPostConnectEvent;
 import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
 import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.ServerConnection;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
 import com.velocitypowered.api.proxy.messages.MinecraftChannelIdentifier;
-import com.velocitypowered.api.proxy.messages.ChannelIdentifier;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
 // 同一パッケージ内のため import は不要
 import net.kyori.adventure.text.Component;
 import org.slf4j.Logger;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import jp.example.common.AsyncDatabase;
+import jp.example.common.MessageDecoder;
+import jp.example.common.JigokuTime;
+import jp.example.common.MessageBatcher;
+import jp.example.common.MessageEncoder;
+import jp.example.common.MessageHandlerRegistry;
+import jp.example.common.Opcode;
+import jp.example.common.ProtocolException;
+import jp.example.common.RequestTracker;
 
 import javax.inject.Inject;
 import java.io.*;
@@ -29,6 +36,7 @@ import java.nio.file.Path;
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Plugin(id = "bancontrol", name = "BanControl", version = "1.0")
 public class BanControlPlugin {
@@ -36,33 +44,62 @@ public class BanControlPlugin {
     private static final MinecraftChannelIdentifier CHANNEL = MinecraftChannelIdentifier.create("myserver", "bancontrol");
     private static final long NIGHT_START = 13000L;  // 12000L から 13000L に変更
     private static final long NIGHT_END = 23000L;   // 24000L から 23000L に変更
-    private static final long DAY_TIME = 24000L;
     private static final int HEARTBEAT_INTERVAL = 30;
-    private static final int MYSQL_HEARTBEAT_INTERVAL = 5;
+    private static final int DAY_NIGHT_CHECK_INTERVAL = 1;
+    private static final String WORLD_TIME_AGE_QUERY =
+        "SELECT time, TIMESTAMPDIFF(SECOND, last_update, NOW()) AS age_seconds FROM world_times WHERE world_name = ?";
+    private static final String WORLD_TIME_QUERY =
+        "SELECT time, is_night, last_update FROM world_times WHERE world_name = ?";
     
     private final ProxyServer server;
     private final Path dataDirectory;
     private final Logger logger;
-    private File banFile;
+    private BanJournal banJournal;
+    private BanStore banStore; // MySQL有効時のみ（bans テーブルとの同期）
     private final Map<UUID, BanInfo> banMap = new ConcurrentHashMap<>();
-    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    // タイマー専用（MySQL の問い合わせは AsyncDatabase、ジャーナルの圧縮は専用の仮想スレッドで実行する）
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "BanControl-Timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final TaskMetrics taskMetrics;
     private final ObjectMapper mapper = new ObjectMapper();
-    private final Set<UUID> deathFlagSet = Collections.synchronizedSet(new HashSet<>()); // Thread-safe化
-    private final Set<UUID> adminTransferFlagSet = Collections.synchronizedSet(new HashSet<>()); // 管理者転送フラグ
+    private final PlayerTransientStates transientStates = new PlayerTransientStates(); // 死亡フラグ・管理者転送フラグ
+    // 死亡フラグ・管理者転送フラグ・BANの失効を1つのタイマーホイールで管理する（精度100ms、1周約51秒）
+    private final TimerWheel<ExpiryKey> expiryWheel;
     private ConfigManager configManager;
+    private volatile Settings settings;
+    private ConfigWatcher configWatcher;
     private final Map<UUID, String> gameModeCache = new ConcurrentHashMap<>();
-    private final Map<String, Long> worldTimes = new ConcurrentHashMap<>();
+    private final ServerPlayerIndex playerIndex = new ServerPlayerIndex();
+    private final MessageHandlerRegistry<PluginMessageEvent> messageHandlers = new MessageHandlerRegistry<>();
+    private final MessageBatcher<String> outboundBatcher = new MessageBatcher<>(this::sendToServerNow);
+    private final RequestTracker requests = new RequestTracker();
+    private final JigokuWorldClock jigokuClock = new JigokuWorldClock(NIGHT_START, NIGHT_END);
+    private NightStateOracle nightStateOracle;
+    private volatile Boolean lastAnnouncedNight;
+    private final AtomicBoolean nightStateRefreshPending = new AtomicBoolean(false);
+    private final AtomicBoolean mysqlPollPending = new AtomicBoolean(false);
     // 未使用の保留クエリは削除
     private ScheduledFuture<?> heartbeatTask; // 追加
     private HikariDataSource dataSource;
+    private AsyncDatabase database;
     private boolean mysqlEnabled = false;
-    private boolean debugMode = false;
 
     @Inject
     public BanControlPlugin(ProxyServer server, @DataDirectory Path dataDirectory, Logger logger) {
         this.server = server;
         this.dataDirectory = dataDirectory;
         this.logger = logger;
+        this.expiryWheel = new TimerWheel<>(100L, 512, logger);
+        this.taskMetrics = new TaskMetrics(logger);
+    }
+
+    // タイマーホイールのキー（同じプレイヤーでも種類ごとに独立して失効させる）
+    private enum ExpiryKind { DEATH_FLAG, ADMIN_TRANSFER_FLAG, BAN }
+
+    private record ExpiryKey(ExpiryKind kind, UUID uuid) {
     }
 
     @Subscribe
@@ -70,8 +107,9 @@ public class BanControlPlugin {
         try {
             // ConfigManagerを初期化
             this.configManager = new ConfigManager(dataDirectory, logger);
-            this.debugMode = configManager.getBoolean("debug", false);
-            logger.info("デバッグモード: {}", debugMode ? "有効" : "無効");
+            this.settings = configManager.snapshot();
+            logger.info("デバッグモード: {}", settings.debug ? "有効" : "無効");
+            this.nightStateOracle = new NightStateOracle(jigokuClock, settings.nightStateMaxAgeMillis);
 
             // MySQL接続を初期化
             initializeMySQL();
@@ -79,15 +117,24 @@ public class BanControlPlugin {
             // データフォルダとファイルの設定
             initializeDataFiles();
 
+            expiryWheel.start(scheduler);
             loadBans();
-            startCleanupTask();
+            startBanSync();
 
             // コマンド、イベント、チャンネルを登録
             registerCommands();
+            registerMessageHandlers();
+            // 再読み込み時など、既に接続しているプレイヤーを索引に取り込む
+            playerIndex.rebuild(server.getAllPlayers());
             server.getChannelRegistrar().register(CHANNEL);
 
             // 定期的にJigokuサーバーの時刻を確認するタスクを開始
             startTimeCheckTask();
+            startDayNightAnnounceTask();
+
+            // config.tomlの変更を監視して自動で再読み込みする
+            this.configWatcher = new ConfigWatcher(configManager.getConfigFile(), logger, scheduler, () -> reloadSettings("ファイル変更"));
+            configWatcher.start();
             
             // シャットダウンフックを登録
             Runtime.getRuntime().addShutdownHook(new Thread(this::cleanup));
@@ -97,7 +144,10 @@ public class BanControlPlugin {
     }
 
     private void startTimeCheckTask() {
-        if (mysqlEnabled) {
+        if (settings.pushTimeReplication) {
+            // Jigokuサーバーから昼夜切り替えと定期補正が送られてくるため、定期ポーリングは行わない
+            logger.info("時刻レプリケーション: push (ポーリング無し)");
+        } else if (mysqlEnabled) {
             startMySQLHeartbeatTask();
         } else {
             startHeartbeatTask();
@@ -107,13 +157,10 @@ public class BanControlPlugin {
     private void initializeDataFiles() {
         try {
             Files.createDirectories(dataDirectory);
-            this.banFile = dataDirectory.resolve("bans.json").toFile();
-            if (banFile.createNewFile()) {
-                logger.info("Created a new bans.json file.");
-            }
         } catch (IOException e) {
-            logger.error("Failed to create the ban file.", e);
+            logger.error("Failed to create the data directory.", e);
         }
+        this.banJournal = new BanJournal(banMap, dataDirectory, mapper, logger);
     }
 
     private void registerCommands() {
@@ -121,6 +168,10 @@ public class BanControlPlugin {
             server.getCommandManager().metaBuilder("unban").build(), 
             new UnbanCommand()
         );
+        server.getCommandManager().register(
+            server.getCommandManager().metaBuilder("bancontrol").build(),
+            new BanControlCommand()
+        );
         // /gense は各Bukkitサーバー側のみで処理させるため Velocity では登録しない
         logger.info("/gense コマンドは Velocity 側では登録しません (Bukkitサーバー側実装のみ使用)");
         // 管理者用コマンドの登録を削除
@@ -152,7 +203,7 @@ public class BanControlPlugin {
         try {
             HikariConfig hikariConfig = new HikariConfig();
             hikariConfig.setJdbcUrl(String.format(
-                    "jdbc:mysql://%s:%d/%s?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true",
+                    "jdbc:mysql://%s:%d/%s?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true&rewriteBatchedStatements=true",
                     host, port, database));
             hikariConfig.setUsername(username);
             hikariConfig.setPassword(password);
@@ -163,8 +214,12 @@ public class BanControlPlugin {
             hikariConfig.setConnectionTimeout(config.getLong("connection_timeout", 30000L));
             hikariConfig.setIdleTimeout(config.getLong("idle_timeout", 600000L));
             hikariConfig.setMaxLifetime(config.getLong("max_lifetime", 1800000L));
+            AsyncDatabase.preparedStatementCacheProperties().forEach(hikariConfig::addDataSourceProperty);
 
             dataSource = new HikariDataSource(hikariConfig);
+            // Velocity にはメインスレッドが無いため、結果は問い合わせを実行した仮想スレッドで通知する
+            this.database = new AsyncDatabase(dataSource, hikariConfig.getMaximumPoolSize(),
+                    config.getLong("max_pending_queries", 256L).intValue(), Runnable::run);
             mysqlEnabled = true;
 
             // テーブルを作成
@@ -177,118 +232,110 @@ public class BanControlPlugin {
     }
 
     private void createWorldTimeTable() {
-        try (Connection conn = dataSource.getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(
-                "CREATE TABLE IF NOT EXISTS world_times (" +
-                "world_name VARCHAR(64) PRIMARY KEY," +
-                "time BIGINT NOT NULL," +
-                "is_night BOOLEAN NOT NULL," +
-                "last_update TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP" +
-                ");" // セミコロンを追加
-            );
-        } catch (SQLException e) {
+        database.update(
+            "CREATE TABLE IF NOT EXISTS world_times (" +
+            "world_name VARCHAR(64) PRIMARY KEY," +
+            "time BIGINT NOT NULL," +
+            "is_night BOOLEAN NOT NULL," +
+            "last_update TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP" +
+            ")", AsyncDatabase.Binder.NONE
+        ).exceptionally(e -> {
             logger.error("world_timesテーブルの作成に失敗しました。", e);
-        }
+            return 0;
+        });
     }
 
     private void startMySQLHeartbeatTask() {
-        heartbeatTask = scheduler.scheduleAtFixedRate(() -> {
-            try {
-                updateWorldTimeFromMySQL();
-            } catch (Exception e) {
-                logger.error("MySQL更新タスクでエラーが発生しました。", e);
+        // 時計モデルで補間するため、ポーリングは補正用の低頻度で十分
+        int pollInterval = settings.mysqlPollIntervalSeconds;
+        // タイマーは問い合わせを投げるだけにし、前回の問い合わせが終わっていなければ今回は見送る
+        heartbeatTask = scheduler.scheduleAtFixedRate(taskMetrics.wrap("timer/mysql-poll", () -> {
+            if (!mysqlPollPending.compareAndSet(false, true)) {
+                return;
             }
-        }, MYSQL_HEARTBEAT_INTERVAL, MYSQL_HEARTBEAT_INTERVAL, TimeUnit.SECONDS);
+            updateWorldTimeFromMySQL().whenComplete((ignored, error) -> mysqlPollPending.set(false));
+        }), 0, pollInterval, TimeUnit.SECONDS);
     }
 
-    private void updateWorldTimeFromMySQL() {
-        if (!mysqlEnabled || dataSource == null) return;
-        
-        String query = "SELECT world_name, time, is_night FROM world_times WHERE world_name = ?";
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, "jigoku");
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    long time = rs.getLong("time");
-                    updateWorldTime("jigoku", time);
-                    if (debugMode) logger.info("[DEBUG][MySQLHeartbeat] row found time={} (mysqlEnabled={})", time, mysqlEnabled);
-                } else {
-                    // DBに行が無い場合は、ハートビートで最新値の取得を試みる
-                    if (debugMode) logger.info("[DEBUG][MySQLHeartbeat] row missing -> request heartbeat (mysqlEnabled={})", mysqlEnabled);
-                    sendHeartbeatToJigoku();
-                }
+    private CompletableFuture<Void> updateWorldTimeFromMySQL() {
+        if (!mysqlEnabled || database == null) return CompletableFuture.completedFuture(null);
+
+        return database.queryOne(WORLD_TIME_AGE_QUERY, stmt -> stmt.setString(1, "jigoku"),
+            rs -> new WorldTimeRow(rs.getLong("time"), Math.max(0L, rs.getLong("age_seconds")))
+        ).handle((row, error) -> {
+            if (error != null) {
+                logger.error("MySQLから時刻情報の取得に失敗しました。HikariCPが自動的に再接続を試みます。", error);
+                // DBエラー時もハートビートでの取得を試みる
+                if (settings.debug) logger.info("[DEBUG][MySQLHeartbeat] exception -> heartbeat fallback");
+                sendHeartbeatToJigoku();
+            } else if (row.isPresent()) {
+                long time = row.get().time();
+                long ageSeconds = row.get().ageSeconds();
+                // 行が書き込まれた時点の時刻として時計モデルに取り込む
+                jigokuClock.observe(time, System.nanoTime() - TimeUnit.SECONDS.toNanos(ageSeconds));
+                if (settings.debug) logger.info("[DEBUG][MySQLHeartbeat] row found time={} age={}s tps={} (mysqlEnabled={})", time, ageSeconds, jigokuClock.getTicksPerSecond(), mysqlEnabled);
+            } else {
+                // DBに行が無い場合は、ハートビートで最新値の取得を試みる
+                if (settings.debug) logger.info("[DEBUG][MySQLHeartbeat] row missing -> request heartbeat (mysqlEnabled={})", mysqlEnabled);
+                sendHeartbeatToJigoku();
             }
-        } catch (SQLException e) {
-            logger.error("MySQLから時刻情報の取得に失敗しました。HikariCPが自動的に再接続を試みます。", e);
-            // DBエラー時もハートビートでの取得を試みる
-            if (debugMode) logger.info("[DEBUG][MySQLHeartbeat] exception -> heartbeat fallback");
-            sendHeartbeatToJigoku();
-        }
+            return null;
+        });
     }
 
     private void startHeartbeatTask() {
-        heartbeatTask = scheduler.scheduleAtFixedRate(() -> {
+        heartbeatTask = scheduler.scheduleAtFixedRate(taskMetrics.wrap("timer/heartbeat", () -> {
             try {
                 sendHeartbeatToJigoku();
             } catch (Exception e) {
                 logger.error("ハートビートタスクでエラーが発生しました。", e);
             }
-        }, HEARTBEAT_INTERVAL, HEARTBEAT_INTERVAL, TimeUnit.SECONDS);
+        }), HEARTBEAT_INTERVAL, HEARTBEAT_INTERVAL, TimeUnit.SECONDS);
     }
 
     private void sendHeartbeatToJigoku() {
-        server.getServer(configManager.getString("jigoku_server_name", "jigoku")).ifPresent(jigokuServer -> {
+        server.getServer(getJigokuServerName()).ifPresent(jigokuServer -> {
             Optional<Player> jigokuPlayer = findPlayerInServer(jigokuServer.getServerInfo().getName());
             
+            // プレイヤーがいない場合は時計モデルの推定に任せる
             if (jigokuPlayer.isPresent()) {
-                ByteArrayDataOutput out = ByteStreams.newDataOutput();
-                out.writeUTF("heartbeat");
-                jigokuServer.sendPluginMessage(CHANNEL, out.toByteArray());
-            } else {
-                estimateWorldTime("jigoku");
+                // 未送信のハートビートがあれば1つにまとめる
+                sendToServer(jigokuServer.getServerInfo().getName(), MessageEncoder.of(Opcode.HEARTBEAT).writeVarInt(0).toByteArray(), "heartbeat");
             }
         });
     }
 
     private Optional<Player> findPlayerInServer(String serverName) {
-        return server.getAllPlayers().stream()
-            .filter(p -> p.getCurrentServer()
-                .map(s -> s.getServerInfo().getName().equals(serverName))
-                .orElse(false))
-            .findFirst();
+        return playerIndex.anyPlayer(serverName);
     }
 
-    private void estimateWorldTime(String worldName) {
-        Long lastTime = worldTimes.get(worldName);
-        if (lastTime != null) {
-            long elapsedRealSeconds = HEARTBEAT_INTERVAL;
-            long elapsedGameTicks = elapsedRealSeconds * 20;
-            long estimatedTime = (lastTime + elapsedGameTicks) % DAY_TIME;
-            updateWorldTime(worldName, estimatedTime);
-        }
+    private void startDayNightAnnounceTask() {
+        scheduler.scheduleAtFixedRate(taskMetrics.wrap("timer/day-night", () -> {
+            try {
+                checkDayNightTransition();
+            } catch (Exception e) {
+                logger.error("昼夜切替チェックでエラーが発生しました。", e);
+            }
+        }), DAY_NIGHT_CHECK_INTERVAL, DAY_NIGHT_CHECK_INTERVAL, TimeUnit.SECONDS);
     }
 
-    private void updateWorldTime(String worldName, long newTime) {
-        Long lastTime = worldTimes.get(worldName);
-        worldTimes.put(worldName, newTime);
-        
-        if (lastTime != null && "jigoku".equals(worldName)) {
-            checkDayNightTransition(lastTime, newTime);
+    // 時計モデルの推定で昼夜の切り替わりを検出してアナウンス
+    private void checkDayNightTransition() {
+        if (!jigokuClock.hasSample()) {
+            return;
         }
-    }
-
-    private void checkDayNightTransition(long oldTime, long newTime) {
-        boolean wasNight = isNightTime(oldTime);
-        boolean isNight = isNightTime(newTime);
+        boolean isNight = jigokuClock.isNight();
+        Boolean previous = lastAnnouncedNight;
+        lastAnnouncedNight = isNight;
+        if (previous == null) {
+            return;
+        }
+        boolean wasNight = previous;
         
         if (isNight && !wasNight) {
-            broadcastToGense(configManager.getString("jigoku_night_message", 
-                "何処かから地鳴りが聞こえる…（地獄ワールドが夜になりました）"));
+            broadcastToGense(settings.messages.jigokuNightAnnouncement());
         } else if (!isNight && wasNight) {
-            broadcastToGense(configManager.getString("jigoku_day_message", 
-                "地獄ワールドの夜は明けました。今なら安全に移動できます！"));
+            broadcastToGense(settings.messages.jigokuDayAnnouncement());
         }
     }
 
@@ -302,59 +349,40 @@ public class BanControlPlugin {
             return;
         }
 
-        ByteArrayDataInput in = ByteStreams.newDataInput(event.getData());
-        String subChannel = in.readUTF();
-        
+        MessageDecoder in;
+        try {
+            in = MessageDecoder.decode(event.getData());
+        } catch (ProtocolException e) {
+            logger.warn("プラグインメッセージを解読できませんでした (送信元: {}): {}", event.getSource(), e.getMessage());
+            return;
+        }
+
         try {
-            handlePluginMessage(subChannel, in, event);
+            messageHandlers.dispatch(in, event);
         } catch (Exception e) {
-            logger.error("プラグインメッセージの処理中にエラーが発生しました: " + subChannel, e);
-        }
-    }
-
-    private void handlePluginMessage(String subChannel, ByteArrayDataInput in, PluginMessageEvent event) {
-        switch (subChannel) {
-            case "jigoku_transfer":
-                handleJigokuTransfer(in);
-                break;
-            case "gense_transfer":
-                handleGenseTransfer(in);
-                break;
-            case "admin_jigoku_transfer":
-                handleAdminJigokuTransfer(in);
-                break;
-            case "admin_gense_transfer":
-                handleAdminGenseTransfer(in);
-                break;
-            case "gamemode_update":
-                handleGameModeUpdate(in);
-                break;
-            case "death_notification":
-                handleDeathNotification(in, event);
-                break;
-            case "night_logout":
-                handleNightLogout(in);
-                break;
-            case "jigoku_night":
-                updateWorldTime("jigoku", 13000L);
-                break;
-            case "jigoku_day":
-                updateWorldTime("jigoku", 1000L);
-                break;
-            case "time_state":
-                handleTimeState(in);
-                break;
-            case "heartbeat_response":
-                handleHeartbeatResponse(in);
-                break;
-            case "query_jigoku_time":
-                handleJigokuTimeQuery(in, event);
-                break;
-        }
-    }
-
-    private void handleJigokuTransfer(ByteArrayDataInput in) {
-        UUID uuid = UUID.fromString(in.readUTF());
+            logger.error("プラグインメッセージの処理中にエラーが発生しました: opcode=" + in.opcodeId(), e);
+        }
+    }
+
+    // 受信メッセージのハンドラーを登録する（起動時に一度だけ）
+    private void registerMessageHandlers() {
+        messageHandlers
+            .register(Opcode.JIGOKU_TRANSFER, (in, event) -> handleJigokuTransfer(in))
+            .register(Opcode.GENSE_TRANSFER, (in, event) -> handleGenseTransfer(in))
+            .register(Opcode.ADMIN_JIGOKU_TRANSFER, (in, event) -> handleAdminJigokuTransfer(in))
+            .register(Opcode.ADMIN_GENSE_TRANSFER, (in, event) -> handleAdminGenseTransfer(in))
+            .register(Opcode.GAMEMODE_UPDATE, (in, event) -> handleGameModeUpdate(in))
+            .register(Opcode.DEATH_NOTIFICATION, this::handleDeathNotification)
+            .register(Opcode.NIGHT_LOGOUT, (in, event) -> handleNightLogout(in))
+            .register(Opcode.TIME_STATE, (in, event) -> handleTimeState(in))
+            .register(Opcode.HEARTBEAT_RESPONSE, (in, event) -> handleHeartbeatResponse(in))
+            .register(Opcode.TIME_SYNC, (in, event) -> handleTimeSync(in))
+            .register(Opcode.QUERY_JIGOKU_TIME, this::handleJigokuTimeQuery)
+            .onUnhandled((in, event) -> logger.warn("未対応のメッセージ種別を受信しました: opcode={} (送信元: {})", in.opcodeId(), event.getSource()));
+    }
+
+    private void handleJigokuTransfer(MessageDecoder in) {
+        UUID uuid = in.readUuid();
         server.getPlayer(uuid).ifPresent(player -> {
             // 先にBAN確認（夜間ログアウトなどで地獄行きを制限したい想定）
             if (checkAndNotifyBan(player, uuid)) {
@@ -363,21 +391,21 @@ public class BanControlPlugin {
             }
             // 時刻チェック
             if (isJigokuNight()) {
-                player.sendMessage(Component.text("§c夜の地獄は危険すぎるため、移動できません。"));
-                if (debugMode) logger.info("[DEBUG][Transfer] jigoku_transfer blocked by night uuid={}", uuid);
+                player.sendMessage(Messages.JIGOKU_NIGHT_DENIED);
+                if (settings.debug) logger.info("[DEBUG][Transfer] jigoku_transfer blocked by night uuid={}", uuid);
                 return;
             }
 
-            if (debugMode) logger.info("[DEBUG][Transfer] jigoku_transfer allowed uuid={}", uuid);
+            if (settings.debug) logger.info("[DEBUG][Transfer] jigoku_transfer allowed uuid={}", uuid);
             transferToServer(player, getJigokuServerName());
         });
     }
 
-    private void handleGenseTransfer(ByteArrayDataInput in) {
-        UUID uuid = UUID.fromString(in.readUTF());
+    private void handleGenseTransfer(MessageDecoder in) {
+        UUID uuid = in.readUuid();
         server.getPlayer(uuid).ifPresent(player -> {
             // GenseへはBAN解除後に戻れる想定ならBANチェックを外す（必要なら再度有効化）
-            if (debugMode) logger.info("[DEBUG][Transfer] gense_transfer processing uuid={} (no ban gate)", uuid);
+            if (settings.debug) logger.info("[DEBUG][Transfer] gense_transfer processing uuid={} (no ban gate)", uuid);
             transferToServer(player, getGenseServerName());
         });
     }
@@ -387,7 +415,7 @@ public class BanControlPlugin {
         server.getServer(serverName).ifPresentOrElse(
             target -> player.createConnectionRequest(target).fireAndForget(),
             () -> {
-                player.sendMessage(Component.text("§c転送先のサーバーが見つかりません: " + serverName));
+                player.sendMessage(settings.messages.serverNotFound(serverName));
                 logger.error("サーバーが見つかりません: " + serverName);
             }
         );
@@ -399,60 +427,38 @@ public class BanControlPlugin {
         if (banInfo != null && banInfo.reason == BanInfo.Reason.NIGHT_LOGOUT) {
             long remainingSeconds = Math.max(0, (banInfo.unbanTime - System.currentTimeMillis()) / 1000);
             if (remainingSeconds > 0) {
-                String message = formatBanMessage(banInfo.reason, remainingSeconds);
-                player.sendMessage(Component.text(message));
+                player.sendMessage(settings.messages.banRemaining(banInfo.reason, remainingSeconds));
                 return true;
             } else {
                 // 期限切れのBANを削除
-                banMap.remove(uuid);
-                saveBans();
+                expireBan(uuid, banInfo);
             }
         }
         return false;
     }
 
-    // BANメッセージのフォーマット
-    private String formatBanMessage(BanInfo.Reason reason, long remainingSeconds) {
-        long minutes = remainingSeconds / 60;
-        long seconds = remainingSeconds % 60;
-        
-        String timeString = minutes > 0 
-            ? String.format("%d分%d秒", minutes, seconds)
-            : String.format("%d秒", seconds);
-            
-        switch (reason) {
-            case NIGHT_LOGOUT:
-                return String.format("§c夜間ログアウトペナルティ中です。残り時間: %s", timeString);
-            case DEATH:
-                return String.format("§c死亡ペナルティ中です。残り時間: %s", timeString);
-            default:
-                return String.format("§cペナルティ中です。残り時間: %s", timeString);
-        }
-    }
-
-    private void handleGameModeUpdate(ByteArrayDataInput in) {
-        UUID uuid = UUID.fromString(in.readUTF());
-        String gameMode = in.readUTF();
+    private void handleGameModeUpdate(MessageDecoder in) {
+        UUID uuid = in.readUuid();
+        String gameMode = in.readString();
         gameModeCache.put(uuid, gameMode);
     }
 
-    private void handleDeathNotification(ByteArrayDataInput in, PluginMessageEvent event) {
-        UUID uuid = UUID.fromString(in.readUTF());
-    String deathMessage = in.readUTF();
+    private void handleDeathNotification(MessageDecoder in, PluginMessageEvent event) {
+        UUID uuid = in.readUuid();
+        String deathMessage = in.readString();
         boolean isDeathTransfer = in.readBoolean();
         // 参考ログ（内容確認用）
-        if (debugMode) logger.info("[DEBUG] death_notification: message='{}' isDeathTransfer={}", deathMessage, isDeathTransfer);
+        if (settings.debug) logger.info("[DEBUG] death_notification: message='{}' isDeathTransfer={}", deathMessage, isDeathTransfer);
         // 死亡フラグのみセット（BANは適用しない）
-        deathFlagSet.add(uuid);
-        
-        // 死亡による転送の場合、一時的にフラグを立てる
+        // 死亡による転送の場合は10秒間だけ有効にする
         if (isDeathTransfer) {
-            // 10秒後に自動削除
-            scheduler.schedule(() -> deathFlagSet.remove(uuid), 10, TimeUnit.SECONDS);
+            setTransientFlag(uuid, PlayerTransientStates.Flag.DEATH, ExpiryKind.DEATH_FLAG, 10);
+        } else {
+            transientStates.set(uuid, PlayerTransientStates.Flag.DEATH, PlayerTransientStates.NO_EXPIRY);
         }
 
-        // Genseに死亡情報を転送
-        forwardMessageToServer(getGenseServerName(), event.getIdentifier(), event.getData());
+        // Genseに死亡情報を転送（BATCH で受信した場合も、この1件のみを転送する）
+        sendToServer(getGenseServerName(), in.rawMessage(), null);
 
         // 即座にGenseサーバーへ転送（ペナルティなし）
         server.getPlayer(uuid).ifPresent(player -> 
@@ -460,16 +466,40 @@ public class BanControlPlugin {
         );
     }
 
-    // メッセージ転送の共通化
-    private void forwardMessageToServer(String serverName, ChannelIdentifier identifier, byte[] data) {
+    /**
+     * バックエンドサーバーへのメッセージ送信
+     * batch_window_millis の間に同じサーバー宛てに送られたメッセージは1つの BATCH にまとめて送る。
+     *
+     * @param coalesceKey 同じ種別・同じキーの未送信メッセージを置き換える場合のキー（null の場合は置き換えない）
+     */
+    private void sendToServer(String serverName, byte[] message, Object coalesceKey) {
+        if (settings.batchWindowMillis <= 0) {
+            sendToServerNow(serverName, message);
+            return;
+        }
+        if (outboundBatcher.add(serverName, message, coalesceKey)) {
+            try {
+                scheduler.schedule(taskMetrics.wrap("timer/batch-flush", outboundBatcher::flush), settings.batchWindowMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // 停止処理中は即時に送る
+                outboundBatcher.flush();
+            }
+        }
+    }
+
+    private void sendToServerNow(String serverName, byte[] data) {
         server.getServer(serverName).ifPresentOrElse(
-            server -> server.sendPluginMessage(identifier, data),
+            target -> {
+                if (!target.sendPluginMessage(CHANNEL, data)) {
+                    logger.warn("サーバー '{}' に接続中のプレイヤーがいないため、メッセージを送信できませんでした", serverName);
+                }
+            },
             () -> logger.warn("サーバー '{}' へのメッセージ転送に失敗しました", serverName)
         );
     }
 
-    private void handleNightLogout(ByteArrayDataInput in) {
-        UUID uuid = UUID.fromString(in.readUTF());
+    private void handleNightLogout(MessageDecoder in) {
+        UUID uuid = in.readUuid();
         boolean isDeathRelated = in.readBoolean();
         logger.info(String.format("[NightLogout] 受信 uuid=%s deathRelated=%s", uuid, isDeathRelated));
         
@@ -487,13 +517,12 @@ public class BanControlPlugin {
             return true;
         }
         
-        if (deathFlagSet.contains(uuid)) {
+        if (consumeDeathFlag(uuid)) {
             logger.info("死亡フラグが立っているため夜間ログアウトペナルティをスキップ: " + uuid);
-            deathFlagSet.remove(uuid);
             return true;
         }
         
-        if (adminTransferFlagSet.remove(uuid)) {
+        if (transientStates.consume(uuid, PlayerTransientStates.Flag.ADMIN_TRANSFER, System.currentTimeMillis())) {
             logger.info("管理者転送のため夜間ログアウトペナルティをスキップ: " + uuid);
             return true;
         }
@@ -502,7 +531,7 @@ public class BanControlPlugin {
     }
 
     private void applyNightLogoutPenalty(UUID uuid) {
-        long nightLogoutBanDuration = configManager.getInt("ban_after_night_logout_minutes", 10) * 60_000L;
+        long nightLogoutBanDuration = settings.nightLogoutBanMillis;
         logger.info(String.format("[NightLogout] ペナルティ適用処理開始 uuid=%s durationMillis=%d", uuid, nightLogoutBanDuration));
         
         BanInfo existingBan = banMap.get(uuid);
@@ -513,18 +542,16 @@ public class BanControlPlugin {
         
         String playerName = getPlayerName(uuid, existingBan);
         
-        banMap.put(uuid, new BanInfo(
+        BanInfo banInfo = new BanInfo(
             System.currentTimeMillis() + nightLogoutBanDuration, 
             BanInfo.Reason.NIGHT_LOGOUT,
             playerName
-        ));
-        saveBans();
+        );
+        putBan(uuid, banInfo, true);
         
         logger.info("夜間ログアウトペナルティを適用: " + playerName + " (" + uuid + ")");
         
-        String message = String.format("§e%s が夜の地獄から逃げ出したため、%d分間のペナルティが課されました。", 
-            playerName, nightLogoutBanDuration / 60_000L);
-        broadcastToAllServers(message);
+        broadcastToAllServers(settings.messages.nightLogoutPenalty(playerName, nightLogoutBanDuration / 60_000L));
     }
 
     private boolean shouldKeepExistingBan(BanInfo existingBan, long newBanDuration) {
@@ -544,54 +571,57 @@ public class BanControlPlugin {
             });
     }
 
-    private void handleTimeState(ByteArrayDataInput in) {
-        String state = in.readUTF();
-        if ("jigoku_night".equals(state)) {
-            updateWorldTime("jigoku", 13000L);
-        } else if ("jigoku_day".equals(state)) {
-            updateWorldTime("jigoku", 1000L);
+    private void handleTimeState(MessageDecoder in) {
+        jigokuClock.observeTransition(in.readBoolean());
+    }
+
+    private void handleHeartbeatResponse(MessageDecoder in) {
+        int requestId = in.readVarInt();
+        if (requestId == 0 || !requests.complete(requestId, in)) {
+            readHeartbeatResponse(in);
         }
     }
 
-    private void handleHeartbeatResponse(ByteArrayDataInput in) {
-    String state = in.readUTF();
-        long time = in.readLong();
-        if (debugMode) logger.info("[DEBUG] heartbeat_response: state='{}' time={}", state, time);
-        updateWorldTime("jigoku", time);
+    private void readHeartbeatResponse(MessageDecoder in) {
+        boolean night = in.readBoolean();
+        long time = in.readVarLong();
+        if (settings.debug) logger.info("[DEBUG] heartbeat_response: night={} time={}", night, time);
+        jigokuClock.observe(time);
+    }
+
+    private void handleTimeSync(MessageDecoder in) {
+        long time = in.readVarLong();
+        jigokuClock.observe(time);
+        if (settings.debug) logger.info("[DEBUG] time_sync: time={} tps={}", time, jigokuClock.getTicksPerSecond());
     }
 
     private boolean isJigokuNight() {
-        boolean result;
-        if (mysqlEnabled) {
-            result = checkJigokuNightFromMySQL();
-            if (debugMode) logger.info("[DEBUG][NightCheck] via MySQL -> {}", result);
-        } else {
-            Long time = worldTimes.get("jigoku");
-            result = time != null && isNightTime(time);
-            if (debugMode) logger.info("[DEBUG][NightCheck] via cache time={} -> {}", time, result);
+        // 転送判定ではDBに触れず、メモリ上の昼夜状態のみを参照する
+        boolean result = nightStateOracle.isNight();
+        if (nightStateOracle.isStale()) {
+            requestNightStateRefresh();
         }
+        if (settings.debug) logger.info("[DEBUG][NightCheck] via oracle ageMillis={} -> {}", nightStateOracle.getAgeMillis(), result);
         return result;
     }
 
-    private boolean checkJigokuNightFromMySQL() {
-        if (!mysqlEnabled || dataSource == null) return false;
-        
-        String query = "SELECT is_night FROM world_times WHERE world_name = ?";
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, "jigoku");
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getBoolean("is_night");
-                }
+    // 昼夜状態が古い場合はバックグラウンドで更新を要求（多重実行はしない）
+    private void requestNightStateRefresh() {
+        if (!nightStateRefreshPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            // Jigokuにプレイヤーがいればハートビート、いなければMySQLから補正する
+            if (findPlayerInServer(getJigokuServerName()).isPresent() || !mysqlEnabled) {
+                sendHeartbeatToJigoku();
+                nightStateRefreshPending.set(false);
+            } else {
+                updateWorldTimeFromMySQL().whenComplete((ignored, error) -> nightStateRefreshPending.set(false));
             }
-        } catch (SQLException e) {
-            logger.error("MySQLからJigokuの夜間状態の確認に失敗しました", e);
+        } catch (RuntimeException e) {
+            logger.error("昼夜状態の更新に失敗しました。", e);
+            nightStateRefreshPending.set(false);
         }
-        
-        // フォールバック
-        Long time = worldTimes.get("jigoku");
-        return time != null && isNightTime(time);
     }
 
     @Subscribe
@@ -601,161 +631,264 @@ public class BanControlPlugin {
         String serverName = player.getCurrentServer()
             .map(s -> s.getServerInfo().getName())
             .orElse("");
+        if (!serverName.isEmpty()) {
+            playerIndex.connected(player, serverName);
+        }
 
         // Genseサーバーに接続し、かつdeathフラグが立っている場合
-        if (getGenseServerName().equals(serverName) && deathFlagSet.remove(uuid)) {
+        if (getGenseServerName().equals(serverName) && consumeDeathFlag(uuid)) {
             // Genseに擬似死亡を依頼
             sendDeathRespawnRequest(uuid);
         }
     }
 
+    @Subscribe
+    public void onDisconnect(DisconnectEvent event) {
+        playerIndex.disconnected(event.getPlayer());
+    }
+
     private void sendDeathRespawnRequest(UUID uuid) {
-        server.getServer(getGenseServerName()).ifPresent(genseServer -> {
-            ByteArrayDataOutput out = ByteStreams.newDataOutput();
-            out.writeUTF("death_respawn");
-            out.writeUTF(uuid.toString());
-            genseServer.sendPluginMessage(CHANNEL, out.toByteArray());
-        });
+        sendToServer(getGenseServerName(), MessageEncoder.of(Opcode.DEATH_RESPAWN).writeUuid(uuid).toByteArray(), null);
     }
 
-    private void startCleanupTask() {
-        scheduler.scheduleAtFixedRate(() -> {
-            boolean changed = false;
-            Iterator<Map.Entry<UUID, BanInfo>> it = banMap.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry<UUID, BanInfo> e = it.next();
-                if (e.getValue().unbanTime < System.currentTimeMillis()) {
-                    it.remove();
-                    changed = true;
-                }
-            }
-            if (changed) saveBans();
-        }, 60, 60, TimeUnit.SECONDS);
+    private boolean consumeDeathFlag(UUID uuid) {
+        return transientStates.consume(uuid, PlayerTransientStates.Flag.DEATH, System.currentTimeMillis());
+    }
+
+    // 有効期限付きでフラグを立て、期限後の削除をタイマーホイールに登録する
+    // （先に消費された場合、削除処理は何もしない）
+    private void setTransientFlag(UUID uuid, PlayerTransientStates.Flag flag, ExpiryKind kind, long seconds) {
+        long expiresAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(seconds);
+        transientStates.set(uuid, flag, expiresAt);
+        expiryWheel.schedule(new ExpiryKey(kind, uuid), expiresAt,
+            () -> transientStates.expire(uuid, flag, System.currentTimeMillis()));
+    }
+
+    // BANの追加・解除（publish = true のローカルの変更は bans テーブルにも書き込む）
+    private void putBan(UUID uuid, BanInfo banInfo, boolean publish) {
+        banJournal.put(uuid, banInfo);
+        scheduleBanExpiry(uuid, banInfo);
+        if (publish && banStore != null) {
+            banStore.recordBan(uuid, banInfo);
+        }
     }
 
-    private void broadcastToGense(String message) {
+    private boolean removeBan(UUID uuid, boolean publish) {
+        // bans テーブルへ書き込むまでは未同期の解除として残し、再起動後も解除を優先させる
+        boolean sync = publish && banStore != null;
+        if (!(sync ? banJournal.removeUnsynced(uuid) : banJournal.remove(uuid))) {
+            return false;
+        }
+        expiryWheel.cancel(new ExpiryKey(ExpiryKind.BAN, uuid));
+        if (sync) {
+            banStore.recordUnban(uuid);
+        }
+        return true;
+    }
+
+    // unbanTime にBANを解除する（その間に置き換え・解除されたBANには何もしない）
+    // 期限による解除は各プロキシがそれぞれ行うため bans テーブルには書き込まない
+    private void scheduleBanExpiry(UUID uuid, BanInfo banInfo) {
+        expiryWheel.schedule(new ExpiryKey(ExpiryKind.BAN, uuid), banInfo.unbanTime, () -> expireBan(uuid, banInfo));
+    }
+
+    private void expireBan(UUID uuid, BanInfo banInfo) {
+        if (banJournal.remove(uuid, banInfo)) {
+            expiryWheel.cancel(new ExpiryKey(ExpiryKind.BAN, uuid));
+        }
+    }
+
+    private void broadcastToGense(Component message) {
         broadcastToServer(getGenseServerName(), message);
     }
 
-    private void broadcastToServer(String serverName, String message) {
-        server.getAllPlayers().stream()
-            .filter(p -> p.getCurrentServer()
-                .map(s -> s.getServerInfo().getName().equals(serverName))
-                .orElse(false))
-            .forEach(p -> p.sendMessage(Component.text(message)));
+    // 同じ Component を全員に送る（受信者ごとに作り直さない）
+    private void broadcastToServer(String serverName, Component message) {
+        for (Player player : playerIndex.players(serverName)) {
+            player.sendMessage(message);
+        }
     }
 
-    private void broadcastToAllServers(String message) {
-        server.getAllPlayers().forEach(p -> p.sendMessage(Component.text(message)));
+    private void broadcastToAllServers(Component message) {
+        for (Player player : server.getAllPlayers()) {
+            player.sendMessage(message);
+        }
     }
 
     private void loadBans() {
-        if (!banFile.exists() || banFile.length() == 0) return;
-        
-        try {
-            banMap.clear();
-            Map<String, BanInfo> tmp = mapper.readValue(banFile, new TypeReference<Map<String, BanInfo>>() {});
-            tmp.forEach((k, v) -> {
-                try {
-                    banMap.put(UUID.fromString(k), v);
-                } catch (IllegalArgumentException e) {
-                    logger.error("無効なUUID形式をスキップ: {}", k);
-                }
-            });
-            logger.info("{}件のBANデータを読み込みました", banMap.size());
-        } catch (Exception e) {
-            logger.error("bans.jsonからのBAN読み込みに失敗しました", e);
-        }
+        // bans.json スナップショット + bans.journal の再生
+        banJournal.load();
+        // 読み込んだBANの失効を登録（既に期限切れのものは次の tick で解除される）
+        banMap.forEach(this::scheduleBanExpiry);
     }
 
-    private synchronized void saveBans() {
-        if (banMap.isEmpty()) {
-            if (debugMode) logger.info("[DEBUG] BANデータが空のため、保存をスキップします");
+    // 他のプロキシと bans テーブルでBANを共有する（判定は引き続き banMap のみを参照する）
+    private void startBanSync() {
+        if (!mysqlEnabled || database == null) {
             return;
         }
-        
-        try {
-            Map<String, BanInfo> toSave = new HashMap<>();
-            banMap.forEach((k, v) -> toSave.put(k.toString(), v));
-            mapper.writerWithDefaultPrettyPrinter().writeValue(banFile, toSave);
-            if (debugMode) logger.info("[DEBUG] {}件のBANデータを保存しました", toSave.size());
-        } catch (Exception e) {
-            logger.error("bans.jsonへのBAN保存に失敗しました", e);
-        }
+        banStore = new BanStore(database, banMap, banJournal, new BanStore.Listener() {
+            @Override
+            public void onRemoteBan(UUID uuid, BanInfo info) {
+                putBan(uuid, info, false);
+            }
+
+            @Override
+            public void onRemoteUnban(UUID uuid) {
+                removeBan(uuid, false);
+            }
+        }, scheduler, logger);
+        banStore.start(settings.banSyncIntervalSeconds);
     }
 
-    // Config参照は configManager.* を直接使用
+    /**
+     * config.toml を読み直し、設定のスナップショットを置き換える
+     *
+     * @return 読み直した場合は true
+     */
+    private synchronized boolean reloadSettings(String trigger) {
+        if (!configManager.reload()) {
+            return false;
+        }
+        Settings previous = settings;
+        settings = configManager.snapshot();
+        logger.info("config.tomlを再読み込みしました ({})", trigger);
+        if (settings.requiresRestartSince(previous)) {
+            logger.warn("time_replication / night_state_max_age_seconds / mysql_poll_interval_seconds / ban_sync_interval_seconds の変更は再起動後に反映されます。");
+        }
+        return true;
+    }
 
     // /unbanコマンド
     class UnbanCommand implements SimpleCommand {
         @Override
         public void execute(Invocation invocation) {
             if (invocation.arguments().length != 1) {
-                invocation.source().sendMessage(Component.text("/unban <player>"));
+                invocation.source().sendMessage(Messages.UNBAN_USAGE);
                 return;
             }
             String name = invocation.arguments()[0];
             Optional<Player> p = server.getPlayer(name);
             if (!p.isPresent()) {
-                invocation.source().sendMessage(Component.text("そのプレイヤーは見つかりません。"));
+                invocation.source().sendMessage(Messages.UNBAN_PLAYER_NOT_FOUND);
                 return;
             }
             UUID uuid = p.get().getUniqueId();
-            if (banMap.remove(uuid) != null) {
-                saveBans();
-                invocation.source().sendMessage(Component.text(name + " のBANを解除しました。"));
+            if (removeBan(uuid, true)) {
+                invocation.source().sendMessage(settings.messages.unbanned(name));
             } else {
-                invocation.source().sendMessage(Component.text(name + " はBANされていません。"));
+                invocation.source().sendMessage(settings.messages.notBanned(name));
+            }
+        }
+    }
+
+    // /bancontrol コマンド（管理用）
+    class BanControlCommand implements SimpleCommand {
+        @Override
+        public void execute(Invocation invocation) {
+            String[] args = invocation.arguments();
+            if (args.length == 1 && args[0].equalsIgnoreCase("reload")) {
+                boolean reloaded = reloadSettings("コマンド");
+                invocation.source().sendMessage(reloaded ? Messages.CONFIG_RELOADED : Messages.CONFIG_RELOAD_FAILED);
+                return;
+            }
+            if (args.length == 1 && args[0].equalsIgnoreCase("stats")) {
+                sendStats(invocation);
+                return;
+            }
+            invocation.source().sendMessage(Messages.BANCONTROL_USAGE);
+        }
+
+        @Override
+        public boolean hasPermission(Invocation invocation) {
+            return invocation.source().hasPermission("bancontrol.admin");
+        }
+
+        @Override
+        public List<String> suggest(Invocation invocation) {
+            return invocation.arguments().length <= 1 ? List.of("reload", "stats") : List.of();
+        }
+
+        private void sendStats(Invocation invocation) {
+            invocation.source().sendMessage(Component.text(String.format(
+                "失効待ち%d件 / 応答待ち%d件",
+                expiryWheel.size(), requests.pendingCount())));
+            if (database != null) {
+                invocation.source().sendMessage(Component.text(String.format(
+                    "MySQL: 実行中%d件 / 完了%d件 平均%.1fms 最大%.1fms / 失敗%d件 拒否%d件",
+                    database.inFlight(), database.getCompletedCount(), database.getAverageMillis(),
+                    database.getMaxMillis(), database.getFailedCount(), database.getRejectedCount())));
+            }
+            if (banStore != null) {
+                invocation.source().sendMessage(Component.text(banStore.describe()));
+            }
+            for (String line : taskMetrics.describe()) {
+                invocation.source().sendMessage(Component.text(line));
             }
         }
     }
 
     // 以前存在した Velocity 側 /gense コマンドは削除（Bukkitサーバー側で統一）
 
-    private void handleAdminJigokuTransfer(ByteArrayDataInput in) {
-        UUID uuid = UUID.fromString(in.readUTF());
+    private void handleAdminJigokuTransfer(MessageDecoder in) {
+        UUID uuid = in.readUuid();
         server.getPlayer(uuid).ifPresent(player -> {
             // 管理者転送フラグを設定（30秒間有効）
-            adminTransferFlagSet.add(uuid);
-            scheduler.schedule(() -> adminTransferFlagSet.remove(uuid), 30, TimeUnit.SECONDS);
+            setTransientFlag(uuid, PlayerTransientStates.Flag.ADMIN_TRANSFER, ExpiryKind.ADMIN_TRANSFER_FLAG, 30);
             
             // 管理者権限チェック（Velocityではパーミッションチェックは各サーバー側で行う）
             transferToServer(player, getJigokuServerName());
-            player.sendMessage(Component.text("§a[管理者] 地獄サーバーへ強制転送しました。"));
+            player.sendMessage(Messages.ADMIN_JIGOKU_TRANSFERRED);
         });
     }
 
-    private void handleAdminGenseTransfer(ByteArrayDataInput in) {
-        UUID uuid = UUID.fromString(in.readUTF());
+    private void handleAdminGenseTransfer(MessageDecoder in) {
+        UUID uuid = in.readUuid();
         server.getPlayer(uuid).ifPresent(player -> {
             // 管理者転送フラグを設定（30秒間有効）
-            adminTransferFlagSet.add(uuid);
-            scheduler.schedule(() -> adminTransferFlagSet.remove(uuid), 30, TimeUnit.SECONDS);
+            setTransientFlag(uuid, PlayerTransientStates.Flag.ADMIN_TRANSFER, ExpiryKind.ADMIN_TRANSFER_FLAG, 30);
             
             // 管理者権限チェック（Velocityではパーミッションチェックは各サーバー側で行う）
             transferToServer(player, getGenseServerName());
-            player.sendMessage(Component.text("§a[管理者] 現世サーバーへ強制転送しました。"));
+            player.sendMessage(Messages.ADMIN_GENSE_TRANSFERRED);
         });
     }
 
     // サーバー名取得の共通化
     private String getJigokuServerName() {
-        return configManager.getString("jigoku_server_name", "jigoku");
+        return settings.jigokuServerName;
     }
 
     private String getGenseServerName() {
-        return configManager.getString("gense_server_name", "gense");
+        return settings.genseServerName;
     }
 
     private void cleanup() {
+        if (configWatcher != null) {
+            configWatcher.close();
+        }
+
         // スケジューラのシャットダウン
         shutdownScheduler();
-        
-        // MySQL接続のクローズ
+
+        // まとめ送信待ちのメッセージを送り、応答待ちの要求はフォールバック値で完了させる
+        outboundBatcher.flush();
+        requests.abandonAll();
+
+        // MySQLへの未書き込みのBANを書き込む（ジャーナルを閉じる前に行い、同期中のBANの変更も記録されるようにする）
+        if (banStore != null) {
+            banStore.shutdown(5, TimeUnit.SECONDS);
+        }
+
+        // BANデータの最終スナップショット
+        if (banJournal != null) {
+            banJournal.close();
+        }
         closeMySQLConnection();
     }
 
     private void shutdownScheduler() {
+        expiryWheel.stop();
         if (heartbeatTask != null && !heartbeatTask.isCancelled()) {
             heartbeatTask.cancel(true);
         }
@@ -774,132 +907,102 @@ public class BanControlPlugin {
     }
 
     private void closeMySQLConnection() {
+        if (database != null && !database.close(5, TimeUnit.SECONDS)) {
+            logger.warn("MySQLへの問い合わせが時間内に完了しなかったため中断しました。");
+        }
         if (dataSource != null && !dataSource.isClosed()) {
             dataSource.close();
             logger.info("MySQL接続プール(HikariCP)を正常にクローズしました");
         }
     }
 
-    private void handleJigokuTimeQuery(ByteArrayDataInput in, PluginMessageEvent event) {
-        UUID uuid = UUID.fromString(in.readUTF());
-        server.getPlayer(uuid).ifPresent(player -> {
-            if (debugMode) logger.info("[DEBUG][TimeQuery] start mysqlEnabled={} dataSourceNull={} uuid={}", mysqlEnabled, (dataSource==null), uuid);
-            if (mysqlEnabled) {
-                // MySQLから時刻情報を取得して返す
-                queryJigokuTimeFromMySQL(player);
-            } else {
-                // 推定時刻を返す
-                Long time = worldTimes.get("jigoku");
-                if (time != null) {
-                    if (debugMode) logger.info("[DEBUG][TimeQuery] cache-hit time={}", time);
-                    sendJigokuTimeResponse(player, time, isNightTime(time));
-                } else {
-                    // まだキャッシュが無ければ、ハートビートを送って取得を試みる
-                    if (debugMode) logger.info("[DEBUG][TimeQuery] cache-miss -> heartbeat");
-                    sendHeartbeatToJigoku();
-                    player.sendMessage(Component.text("§e地獄ワールドの時刻を取得中です。数秒後に/jigokutime をもう一度実行してください。"));
-                }
+    // 現世からの時刻問い合わせには、時刻が確定してから1回だけ応答する
+    private void handleJigokuTimeQuery(MessageDecoder in, PluginMessageEvent event) {
+        int requestId = in.readVarInt();
+        UUID uuid = in.readUuid();
+        if (!(event.getSource() instanceof ServerConnection connection)) {
+            return;
+        }
+        if (settings.debug) logger.info("[DEBUG][TimeQuery] start requestId={} mysqlEnabled={} uuid={}", requestId, mysqlEnabled, uuid);
+        resolveJigokuTime().whenComplete((resolved, error) -> {
+            JigokuTime time = resolved;
+            if (error != null) {
+                logger.error("地獄ワールドの時刻の取得に失敗しました。", error);
+                time = JigokuTime.unavailable();
+            }
+            if (settings.debug) logger.info("[DEBUG][TimeQuery] reply requestId={} source={} time={}", requestId, time.getSource(), time.getTime());
+            byte[] reply = time.write(MessageEncoder.of(Opcode.JIGOKU_TIME_RESPONSE).writeVarInt(requestId).writeUuid(uuid)).toByteArray();
+            if (!connection.sendPluginMessage(CHANNEL, reply)) {
+                logger.warn("時刻の問い合わせに応答できませんでした (uuid={})", uuid);
             }
         });
     }
 
-    private void queryJigokuTimeFromMySQL(Player player) {
-        if (!mysqlEnabled || dataSource == null) {
-            player.sendMessage(Component.text("§cMySQL接続が利用できません。"));
-            if (debugMode) logger.info("[DEBUG][TimeQuery/MySQL] rejected mysqlEnabled={} dataSourceNull={}", mysqlEnabled, (dataSource==null));
-            return;
+    /**
+     * 地獄ワールドの時刻を取得する
+     * 時計モデルが新しければ即時、そうでなければ MySQL → ハートビートの順に問い合わせ、
+     * いずれも失敗した場合は古い推定値（無ければ取得不可）で完了する。
+     */
+    private CompletableFuture<JigokuTime> resolveJigokuTime() {
+        if (jigokuClock.hasSample() && (!mysqlEnabled || !nightStateOracle.isStale())) {
+            return CompletableFuture.completedFuture(clockTime(JigokuTime.Source.CLOCK));
         }
-        
-        scheduler.execute(() -> {
-            String query = "SELECT time, is_night, last_update FROM world_times WHERE world_name = ?";
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(query)) {
-                stmt.setString(1, "jigoku");
-                logger.debug("[TimeQuery/MySQL] executing query uuid={} thread={}", player.getUniqueId(), Thread.currentThread().getName());
-                try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        long time = rs.getLong("time");
-                        boolean isNight = rs.getBoolean("is_night");
-                        Timestamp lastUpdate = rs.getTimestamp("last_update");
-                        logger.debug("[TimeQuery/MySQL] row time={} isNight={} lastUpdate={}", time, isNight, lastUpdate);
-                        
-                        // 結果を送信
-                        sendJigokuTimeResponseWithDetails(player, time, isNight, lastUpdate);
-                    } else {
-                        logger.debug("[TimeQuery/MySQL] no row -> heartbeat + cache fallback");
-                        // 行が無い場合はハートビートでの取得を試み、キャッシュがあればそれで応答
-                        sendHeartbeatToJigoku();
-                        Long cached = worldTimes.get("jigoku");
-                        if (cached != null) {
-                            logger.debug("[TimeQuery/MySQL] cache-after-miss time={}", cached);
-                            sendJigokuTimeResponse(player, cached, isNightTime(cached));
-                        } else {
-                            player.sendMessage(Component.text("§e時刻情報を取得中です。数秒後に/jigokutime をもう一度実行してください。"));
-                        }
-                    }
-                }
-            } catch (SQLException e) {
-                logger.error("MySQLから時刻情報の取得に失敗しました。", e);
-                // エラー時もハートビートを送ってフォールバック
-                logger.debug("[TimeQuery/MySQL] exception -> heartbeat fallback");
-                sendHeartbeatToJigoku();
-                Long cached = worldTimes.get("jigoku");
-                if (cached != null) {
-                    sendJigokuTimeResponse(player, cached, isNightTime(cached));
-                } else {
-                    player.sendMessage(Component.text("§e現在データベースに接続できません。数秒後に/jigokutime をもう一度実行してください。"));
-                }
+        if (mysqlEnabled && database != null) {
+            // 接続待ちで応答が遅れないよう、DBも応答待ち時間で打ち切る
+            return queryJigokuTimeFromMySQL().completeOnTimeout(null, settings.requestTimeoutMillis, TimeUnit.MILLISECONDS).thenCompose(time ->
+                time != null ? CompletableFuture.completedFuture(time) : fetchJigokuTimeByHeartbeat());
+        }
+        return fetchJigokuTimeByHeartbeat();
+    }
+
+    private JigokuTime clockTime(JigokuTime.Source source) {
+        long time = jigokuClock.currentTime();
+        return new JigokuTime(source, time, isNightTime(time), nightStateOracle.getAgeMillis());
+    }
+
+    // 行が無い・DBエラーの場合は null で完了する
+    private CompletableFuture<JigokuTime> queryJigokuTimeFromMySQL() {
+        return database.queryOne(WORLD_TIME_QUERY, stmt -> stmt.setString(1, "jigoku"), rs -> {
+            long time = rs.getLong("time");
+            boolean isNight = rs.getBoolean("is_night");
+            Timestamp lastUpdate = rs.getTimestamp("last_update");
+            logger.debug("[TimeQuery/MySQL] row time={} isNight={} lastUpdate={}", time, isNight, lastUpdate);
+            long ageMillis = -1L;
+            if (lastUpdate != null) {
+                ageMillis = Math.max(0L, System.currentTimeMillis() - lastUpdate.getTime());
+                jigokuClock.observe(time, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(ageMillis));
+            }
+            return new JigokuTime(JigokuTime.Source.DATABASE, time, isNight, ageMillis);
+        }).handle((row, error) -> {
+            if (error != null) {
+                logger.error("MySQLから時刻情報の取得に失敗しました。", error);
+                return null;
             }
+            if (row.isEmpty()) {
+                logger.debug("[TimeQuery/MySQL] no row -> heartbeat");
+            }
+            return row.orElse(null);
         });
     }
 
-    private void sendJigokuTimeResponse(Player player, long time, boolean isNight) {
-        long normalizedTime = time % 24000;
-        
-        player.sendMessage(Component.text("§6=== 地獄ワールドの時刻情報 ==="));
-        player.sendMessage(Component.text(String.format("§e現在時刻: §f%d §7/ 24000", normalizedTime)));
-        player.sendMessage(Component.text(String.format("§e時間帯: %s", isNight ? "§c夜" : "§a昼")));
-        
-        if (isNight) {
-            long ticksUntilDay = 23000 - normalizedTime;  // 24000 から 23000 に変更
-            long secondsUntilDay = ticksUntilDay / 20;
-            player.sendMessage(Component.text(String.format("§e朝まで: §f%d秒 §7(%dティック)", secondsUntilDay, ticksUntilDay)));
-            player.sendMessage(Component.text("§c※ 夜間は/genseコマンドが使用できません"));
-        } else {
-            long ticksUntilNight = 13000 - normalizedTime;  // 12000 から 13000 に変更
-            if (ticksUntilNight < 0) ticksUntilNight += 24000;
-            long secondsUntilNight = ticksUntilNight / 20;
-            player.sendMessage(Component.text(String.format("§e夜まで: §f%d秒 §7(%dティック)", secondsUntilNight, ticksUntilNight)));
-            player.sendMessage(Component.text("§a※ 昼間は/genseコマンドで現世に戻れます"));
-        }
+    private record WorldTimeRow(long time, long ageSeconds) {
     }
 
-    private void sendJigokuTimeResponseWithDetails(Player player, long time, boolean isNight, Timestamp lastUpdate) {
-        long normalizedTime = time % 24000;
-        
-        player.sendMessage(Component.text("§6=== 地獄ワールドの時刻情報 ==="));
-        player.sendMessage(Component.text(String.format("§e現在時刻: §f%d §7/ 24000", normalizedTime)));
-        player.sendMessage(Component.text(String.format("§e時間帯: %s §7(DB: %s)", 
-            isNight ? "§c夜" : "§a昼",
-            isNight ? "夜" : "昼")));
-        
-        if (isNight) {
-            long ticksUntilDay = 23000 - normalizedTime;  // 24000 から 23000 に変更
-            long secondsUntilDay = ticksUntilDay / 20;
-            player.sendMessage(Component.text(String.format("§e朝まで: §f%d秒 §7(%dティック)", secondsUntilDay, ticksUntilDay)));
-            player.sendMessage(Component.text("§c※ 夜間はサーバー移動ができません！"));
-        } else {
-            long ticksUntilNight = 13000 - normalizedTime;  // 12000 から 13000 に変更
-            if (ticksUntilNight < 0) ticksUntilNight += 24000;
-            long secondsUntilNight = ticksUntilNight / 20;
-            player.sendMessage(Component.text(String.format("§e夜まで: §f%d秒 §7(%dティック)", secondsUntilNight, ticksUntilNight)));
-            player.sendMessage(Component.text("§a※ 昼間はサーバー移動可能です"));
+    // 地獄サーバーへ応答 ID 付きのハートビートを送り、応答を待つ
+    private CompletableFuture<JigokuTime> fetchJigokuTimeByHeartbeat() {
+        JigokuTime fallback = jigokuClock.hasSample() ? clockTime(JigokuTime.Source.STALE) : JigokuTime.unavailable();
+        Optional<RegisteredServer> jigoku = server.getServer(getJigokuServerName());
+        if (jigoku.isEmpty() || findPlayerInServer(getJigokuServerName()).isEmpty()) {
+            // プレイヤーがいない地獄サーバーにはメッセージを届けられない
+            return CompletableFuture.completedFuture(fallback);
         }
-        
-        // 最終更新時刻を表示
-        if (lastUpdate != null) {
-            long secondsAgo = (System.currentTimeMillis() - lastUpdate.getTime()) / 1000;
-            player.sendMessage(Component.text(String.format("§7最終更新: %d秒前", Math.max(0, secondsAgo))));
+        RequestTracker.Call<Boolean> call = requests.begin(in -> {
+            readHeartbeatResponse(in);
+            return true;
+        }, false, settings.requestTimeoutMillis);
+        if (!jigoku.get().sendPluginMessage(CHANNEL, MessageEncoder.of(Opcode.HEARTBEAT).writeVarInt(call.id()).toByteArray())) {
+            requests.abandon(call);
         }
+        return call.future().thenApply(answered -> answered ? clockTime(JigokuTime.Source.CLOCK) : fallback);
     }
 }
@@ -0,0 +1,428 @@
+package jp.example.bancontrol;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * BANデータの永続化エンジン
+ * bans.json をスナップショットとし、変更は bans.journal へ1件ずつ追記する。
+ * ジャーナルが一定件数を超えると専用の仮想スレッドでスナップショットへ圧縮する。
+ * MySQL への書き込みが済んでいないローカルの解除は未同期の解除として記録し（スナップショットは bans.unsynced.json）、
+ * 再起動をまたいでも bans テーブルの古い行で解除が取り消されないようにする。
+ */
+public class BanJournal {
+
+    private static final int MAGIC = 0x424A4E31; // "BJN1"
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_REMOVE_UNSYNCED = 3; // 解除 + 未同期の解除として記録
+    private static final byte OP_SYNCED = 4;          // 未同期の解除の書き込み完了
+    private static final int COMPACT_THRESHOLD = 256;
+
+    private final Map<UUID, BanInfo> banMap;
+    private final File snapshotFile;
+    private final File journalFile;
+    private final File rotatedJournalFile;
+    private final File unsyncedFile;
+    private final ObjectMapper mapper;
+    private final Logger logger;
+    private final Object lock = new Object();
+    private final AtomicBoolean compacting = new AtomicBoolean(false);
+    private volatile Thread compactionThread;
+    private final Set<UUID> unsyncedRemovals = new HashSet<>(); // lock で保護
+    private OutputStream journalOut;
+    private int journalRecords;
+
+    public BanJournal(Map<UUID, BanInfo> banMap, Path dataDirectory, ObjectMapper mapper, Logger logger) {
+        this.banMap = banMap;
+        this.snapshotFile = dataDirectory.resolve("bans.json").toFile();
+        this.journalFile = dataDirectory.resolve("bans.journal").toFile();
+        this.rotatedJournalFile = dataDirectory.resolve("bans.journal.old").toFile();
+        this.unsyncedFile = dataDirectory.resolve("bans.unsynced.json").toFile();
+        this.mapper = mapper;
+        this.logger = logger;
+    }
+
+    /**
+     * スナップショットを読み込み、ジャーナルを再生して banMap を復元する
+     */
+    public void load() {
+        synchronized (lock) {
+            banMap.clear();
+            unsyncedRemovals.clear();
+            loadSnapshot();
+            int replayed = replay(rotatedJournalFile) + replay(journalFile);
+            journalRecords = replayed;
+            openJournal();
+            logger.info("{}件のBANデータを読み込みました (ジャーナル再生: {}件)", banMap.size(), replayed);
+        }
+        if (rotatedJournalFile.exists() || journalRecords >= COMPACT_THRESHOLD) {
+            scheduleCompaction();
+        }
+    }
+
+    /**
+     * banMap にBANを追加・更新し、1レコードとして追記する
+     */
+    public void put(UUID uuid, BanInfo info) {
+        append(encode(OP_PUT, uuid, info), () -> {
+            banMap.put(uuid, info);
+            unsyncedRemovals.remove(uuid);
+            return true;
+        });
+    }
+
+    /**
+     * banMap からBANを解除し、1レコードとして追記する
+     *
+     * @return 解除するBANがあったか
+     */
+    public boolean remove(UUID uuid) {
+        return append(encode(OP_REMOVE, uuid, null), () -> banMap.remove(uuid) != null);
+    }
+
+    /**
+     * banMap からBANを解除し、MySQL へ書き込むまでは未同期の解除として記録する
+     *
+     * @return 解除するBANがあったか
+     */
+    public boolean removeUnsynced(UUID uuid) {
+        return append(encode(OP_REMOVE_UNSYNCED, uuid, null), () -> {
+            if (banMap.remove(uuid) == null) {
+                return false;
+            }
+            unsyncedRemovals.add(uuid);
+            return true;
+        });
+    }
+
+    /**
+     * 未同期の解除を MySQL へ書き込み済みにする
+     */
+    public void markSynced(UUID uuid) {
+        append(encode(OP_SYNCED, uuid, null), () -> unsyncedRemovals.remove(uuid));
+    }
+
+    /** MySQL へ書き込まれていないローカルの解除 */
+    public Set<UUID> unsyncedRemovals() {
+        synchronized (lock) {
+            return new HashSet<>(unsyncedRemovals);
+        }
+    }
+
+    /**
+     * banMap のBANが info のままであれば解除し、1レコードとして追記する（期限切れによる解除用）
+     */
+    public boolean remove(UUID uuid, BanInfo info) {
+        return append(encode(OP_REMOVE, uuid, null), () -> banMap.remove(uuid, info));
+    }
+
+    /**
+     * 最終スナップショットを書き出してジャーナルを閉じる（シャットダウン時）
+     */
+    public void close() {
+        // 実行中の圧縮が古いスナップショットで上書きしないよう、終わるまで待つ
+        Thread compaction = compactionThread;
+        if (compaction != null) {
+            try {
+                compaction.join(5000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        Map<UUID, BanInfo> snapshot;
+        Set<UUID> unsynced;
+        synchronized (lock) {
+            snapshot = new HashMap<>(banMap);
+            unsynced = new HashSet<>(unsyncedRemovals);
+            closeJournal();
+        }
+        if (writeSnapshot(snapshot, unsynced)) {
+            deleteQuietly(rotatedJournalFile);
+            deleteQuietly(journalFile);
+        }
+    }
+
+    // banMap の変更と追記を同じロック内で行い、ジャーナルの順序を banMap の変更順と一致させる
+    private boolean append(byte[] record, BooleanSupplier mutation) {
+        boolean compact;
+        synchronized (lock) {
+            if (!mutation.getAsBoolean()) {
+                return false;
+            }
+            if (journalOut == null) {
+                openJournal();
+                if (journalOut == null) {
+                    return true;
+                }
+            }
+            try {
+                journalOut.write(record);
+                journalOut.flush();
+            } catch (IOException e) {
+                logger.error("bans.journalへの追記に失敗しました", e);
+                return true;
+            }
+            compact = ++journalRecords >= COMPACT_THRESHOLD;
+        }
+        if (compact) {
+            scheduleCompaction();
+        }
+        return true;
+    }
+
+    private void scheduleCompaction() {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            compactionThread = Thread.ofVirtual().name("BanControl-Compaction").start(this::compact);
+        } catch (Exception e) {
+            compacting.set(false);
+            logger.warn("ジャーナル圧縮タスクを登録できませんでした: {}", e.getMessage());
+        }
+    }
+
+    private void compact() {
+        try {
+            Map<UUID, BanInfo> snapshot;
+            Set<UUID> unsynced;
+            synchronized (lock) {
+                // banMap の変更と追記は同じロック内で行われるため、コピーとローテーションを同一ロック内で行えば
+                // 以降のレコードはすべて新しいジャーナルに入る
+                snapshot = new HashMap<>(banMap);
+                unsynced = new HashSet<>(unsyncedRemovals);
+                if (!rotatedJournalFile.exists()) {
+                    closeJournal();
+                    if (journalFile.exists() && !journalFile.renameTo(rotatedJournalFile)) {
+                        logger.warn("bans.journalのローテーションに失敗しました");
+                    }
+                    openJournal();
+                }
+                journalRecords = 0;
+            }
+            if (writeSnapshot(snapshot, unsynced)) {
+                deleteQuietly(rotatedJournalFile);
+                logger.debug("BANジャーナルを圧縮しました ({}件)", snapshot.size());
+            }
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    private boolean writeSnapshot(Map<UUID, BanInfo> snapshot, Set<UUID> unsynced) {
+        Map<String, BanInfo> toSave = new HashMap<>();
+        snapshot.forEach((k, v) -> toSave.put(k.toString(), v));
+        List<String> unsyncedToSave = new ArrayList<>();
+        unsynced.forEach(uuid -> unsyncedToSave.add(uuid.toString()));
+        try {
+            // 未同期の解除を先に書き出す（途中で失敗してもジャーナルは残るため、次回の再生で復元される）
+            if (unsyncedToSave.isEmpty()) {
+                Files.deleteIfExists(unsyncedFile.toPath());
+            } else {
+                writeAtomically(unsyncedFile, unsyncedToSave);
+            }
+            writeAtomically(snapshotFile, toSave);
+            return true;
+        } catch (Exception e) {
+            logger.error("bans.jsonへのスナップショット保存に失敗しました", e);
+            return false;
+        }
+    }
+
+    private void writeAtomically(File file, Object value) throws IOException {
+        Path target = file.toPath();
+        Path tmp = target.resolveSibling(file.getName() + ".tmp");
+        mapper.writerWithDefaultPrettyPrinter().writeValue(tmp.toFile(), value);
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void loadSnapshot() {
+        if (!snapshotFile.exists() || snapshotFile.length() == 0) return;
+
+        try {
+            Map<String, BanInfo> tmp = mapper.readValue(snapshotFile, new TypeReference<Map<String, BanInfo>>() {});
+            tmp.forEach((k, v) -> {
+                try {
+                    banMap.put(UUID.fromString(k), v);
+                } catch (IllegalArgumentException e) {
+                    logger.error("無効なUUID形式をスキップ: {}", k);
+                }
+            });
+        } catch (Exception e) {
+            logger.error("bans.jsonからのBAN読み込みに失敗しました", e);
+        }
+
+        if (!unsyncedFile.exists() || unsyncedFile.length() == 0) return;
+
+        try {
+            List<String> tmp = mapper.readValue(unsyncedFile, new TypeReference<List<String>>() {});
+            for (String k : tmp) {
+                try {
+                    unsyncedRemovals.add(UUID.fromString(k));
+                } catch (IllegalArgumentException e) {
+                    logger.error("無効なUUID形式をスキップ: {}", k);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("bans.unsynced.jsonからの読み込みに失敗しました", e);
+        }
+    }
+
+    private int replay(File file) {
+        if (!file.exists() || file.length() == 0) return 0;
+
+        int count = 0;
+        long valid = 0; // 最後の完全なレコードの末尾
+        CountingInputStream counter;
+        try {
+            counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+        } catch (FileNotFoundException e) {
+            logger.error(file.getName() + " を開けませんでした", e);
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(counter)) {
+            if (in.readInt() != MAGIC) {
+                logger.error("{} の形式が不正なため再生をスキップします", file.getName());
+                return 0;
+            }
+            valid = counter.count();
+            while (true) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException end) {
+                    break;
+                }
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                if (op == OP_PUT) {
+                    long unbanTime = in.readLong();
+                    BanInfo.Reason reason = BanInfo.Reason.values()[in.readByte()];
+                    String username = in.readUTF();
+                    banMap.put(uuid, new BanInfo(unbanTime, reason, username));
+                    unsyncedRemovals.remove(uuid);
+                } else if (op == OP_REMOVE) {
+                    banMap.remove(uuid);
+                } else if (op == OP_REMOVE_UNSYNCED) {
+                    banMap.remove(uuid);
+                    unsyncedRemovals.add(uuid);
+                } else if (op == OP_SYNCED) {
+                    unsyncedRemovals.remove(uuid);
+                } else {
+                    logger.warn("{} に未知のレコード種別 {} があるため以降を無視します", file.getName(), op);
+                    break;
+                }
+                count++;
+                valid = counter.count();
+            }
+        } catch (EOFException e) {
+            // 書き込み途中で停止した末尾レコードは破棄する（以降の追記が続きから読めるよう切り詰める）
+            logger.warn("{} の末尾に不完全なレコードがあったため破棄しました", file.getName());
+            truncate(file, valid);
+        } catch (IOException | ArrayIndexOutOfBoundsException e) {
+            logger.error(file.getName() + " の再生に失敗しました", e);
+        }
+        return count;
+    }
+
+    private void truncate(File file, long length) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        } catch (IOException e) {
+            logger.error(file.getName() + " の切り詰めに失敗しました", e);
+        }
+    }
+
+    // 読み取ったバイト数を数える（再生できた位置まで切り詰めるため）
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        long count() {
+            return count;
+        }
+    }
+
+    private byte[] encode(byte op, UUID uuid, BanInfo info) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            out.writeByte(op);
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+            if (op == OP_PUT) {
+                out.writeLong(info.unbanTime);
+                out.writeByte(info.reason.ordinal());
+                out.writeUTF(info.username != null ? info.username : "Unknown");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private void openJournal() {
+        try {
+            boolean fresh = !journalFile.exists() || journalFile.length() == 0;
+            journalOut = new BufferedOutputStream(new FileOutputStream(journalFile, true));
+            if (fresh) {
+                new DataOutputStream(journalOut).writeInt(MAGIC);
+                journalOut.flush();
+            }
+        } catch (IOException e) {
+            logger.error("bans.journalを開けませんでした", e);
+            journalOut = null;
+        }
+    }
+
+    private void closeJournal() {
+        if (journalOut == null) return;
+        try {
+            journalOut.close();
+        } catch (IOException e) {
+            logger.warn("bans.journalのクローズに失敗しました: {}", e.getMessage());
+        }
+        journalOut = null;
+    }
+
+    private void deleteQuietly(File file) {
+        if (file.exists() && !file.delete()) {
+            logger.warn("{} を削除できませんでした", file.getName());
+        }
+    }
+}
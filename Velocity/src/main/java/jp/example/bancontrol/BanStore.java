@@ -0,0 +1,356 @@
+package jp.example.bancontrol;
+
+import jp.example.common.AsyncDatabase;
+import org.slf4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MySQL の bans テーブルとのBANデータの同期（複数プロキシ間での共有用）
+ * banMap をニアキャッシュとし、BANの判定は常にメモリ上で行う。
+ * ローカルの変更は UUID ごとにまとめてから一括で書き込み（解除は deleted を立てる論理削除）、
+ * 他のプロキシによる変更は updated_at のウォーターマーク以降の行を定期的に読み込んで反映する。
+ * 起動時は有効なBANを1回の問い合わせでまとめて読み込み、DBに無いローカルのBANは書き込む。
+ * 前回書き込めなかったローカルの解除（BanJournal の未同期の解除）は読み込みより先に書き込み待ちにし、
+ * DBに残っている古い行で解除が取り消されないようにする。
+ * 書き込みと読み込みは同時に1つだけ実行する。
+ */
+public class BanStore {
+
+    /** 他のプロキシによる変更の反映先 */
+    public interface Listener {
+        void onRemoteBan(UUID uuid, BanInfo info);
+
+        void onRemoteUnban(UUID uuid);
+    }
+
+    private static final String CREATE_TABLE =
+        "CREATE TABLE IF NOT EXISTS bans (" +
+        "uuid CHAR(36) PRIMARY KEY," +
+        "username VARCHAR(32) NOT NULL," +
+        "reason VARCHAR(16) NOT NULL," +
+        "unban_time BIGINT NOT NULL," +
+        "deleted BOOLEAN NOT NULL DEFAULT FALSE," +
+        "updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)," +
+        "INDEX idx_bans_updated_at (updated_at)" +
+        ")";
+    private static final String PURGE = "DELETE FROM bans WHERE unban_time < ?";
+    private static final String NOW = "SELECT NOW(3)";
+    private static final String LOAD_ACTIVE =
+        "SELECT uuid, username, reason, unban_time, deleted, updated_at FROM bans WHERE unban_time > ?";
+    private static final String LOAD_CHANGES =
+        "SELECT uuid, username, reason, unban_time, deleted, updated_at FROM bans WHERE updated_at > ? ORDER BY updated_at";
+    private static final String UPSERT =
+        "INSERT INTO bans (uuid, username, reason, unban_time, deleted) VALUES (?, ?, ?, ?, FALSE) " +
+        "ON DUPLICATE KEY UPDATE username = VALUES(username), reason = VALUES(reason), " +
+        "unban_time = VALUES(unban_time), deleted = FALSE";
+    private static final String SOFT_DELETE = "UPDATE bans SET deleted = TRUE WHERE uuid = ?";
+
+    // 書き込みと同じ時刻の行を取りこぼさないよう、ウォーターマークより少し前から読み直す（反映は冪等）
+    private static final long WATERMARK_OVERLAP_MILLIS = 2000L;
+    // 解除から一定期間を過ぎた行は削除する
+    private static final long PURGE_AFTER_MILLIS = TimeUnit.DAYS.toMillis(7);
+    private static final long FLUSH_DELAY_MILLIS = 200L;
+
+    /** 未書き込みの変更（info が null の場合は解除） */
+    private record Change(BanInfo info) {
+    }
+
+    private record Row(UUID uuid, BanInfo info, boolean deleted, Timestamp updatedAt) {
+    }
+
+    private record CycleResult(Map<UUID, Change> written, List<Row> rows, Set<UUID> loadedIds, Timestamp watermark) {
+    }
+
+    private final AsyncDatabase database;
+    private final Map<UUID, BanInfo> banMap;
+    private final BanJournal journal;
+    private final Listener listener;
+    private final ScheduledExecutorService scheduler;
+    private final Logger logger;
+    private final Map<UUID, Change> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicBoolean rerun = new AtomicBoolean(false);
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private volatile CompletableFuture<Void> currentCycle = CompletableFuture.completedFuture(null);
+    private volatile Timestamp watermark; // null = 起動時の読み込みが未完了
+    private volatile boolean closing = false; // シャットダウン中は他のプロキシの変更を反映しない
+
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong appliedCount = new AtomicLong();
+    private final AtomicLong failedCycles = new AtomicLong();
+
+    public BanStore(AsyncDatabase database, Map<UUID, BanInfo> banMap, BanJournal journal, Listener listener,
+                    ScheduledExecutorService scheduler, Logger logger) {
+        this.database = database;
+        this.banMap = banMap;
+        this.journal = journal;
+        this.listener = listener;
+        this.scheduler = scheduler;
+        this.logger = logger;
+    }
+
+    /**
+     * 起動時の読み込みを開始し、以降 intervalSeconds ごとに他のプロキシの変更を読み込む
+     */
+    public void start(int intervalSeconds) {
+        for (UUID uuid : journal.unsyncedRemovals()) {
+            pending.putIfAbsent(uuid, new Change(null));
+        }
+        runCycle();
+        scheduler.scheduleAtFixedRate(this::runCycle, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /** BANの追加・更新を書き込み待ちにする */
+    public void recordBan(UUID uuid, BanInfo info) {
+        pending.put(uuid, new Change(info));
+        scheduleFlush();
+    }
+
+    /** BANの解除を書き込み待ちにする */
+    public void recordUnban(UUID uuid) {
+        pending.put(uuid, new Change(null));
+        scheduleFlush();
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    public String describe() {
+        return String.format("BAN同期: 書き込み待ち%d件 / 書き込み%d件 反映%d件 / 失敗%d回 / ウォーターマーク %s",
+            pending.size(), writtenCount.get(), appliedCount.get(), failedCycles.get(),
+            watermark != null ? watermark : "未読み込み");
+    }
+
+    /**
+     * 実行中の同期を待ち、書き込み待ちの変更を書き込む（シャットダウン時、AsyncDatabase を閉じる前に呼ぶ）
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        // 停止済みのタイマーや閉じたジャーナルに触れないよう、以降はリスナーを呼ばない（変更は次回起動時に読み込まれる）
+        closing = true;
+        try {
+            // 実行中の同期の後に書き込み待ちが残っていれば、もう一度だけ同期する
+            for (int i = 0; i < 2 && (running.get() || (!pending.isEmpty() && watermark != null)); i++) {
+                if (!running.get()) {
+                    runCycle();
+                }
+                currentCycle.get(timeout, unit);
+            }
+        } catch (TimeoutException e) {
+            logger.warn("BANデータのMySQLへの書き込みが時間内に完了しませんでした (未書き込み: {}件)", pending.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("BANデータのMySQLへの書き込みに失敗しました: {}", e.getMessage());
+        }
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            // 短時間に続く変更を1回の書き込みにまとめる
+            scheduler.schedule(() -> {
+                flushScheduled.set(false);
+                runCycle();
+            }, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            flushScheduled.set(false);
+        }
+    }
+
+    private void runCycle() {
+        if (!running.compareAndSet(false, true)) {
+            rerun.set(true);
+            return;
+        }
+        Map<UUID, Change> toWrite = new HashMap<>(pending);
+        Timestamp since = watermark;
+        CompletableFuture<Void> cycle = database.withConnection(conn -> since == null
+                ? load(conn)
+                : sync(conn, toWrite, since))
+            .handle((result, error) -> {
+                if (error != null) {
+                    failedCycles.incrementAndGet();
+                    logger.warn("MySQLとのBANデータの同期に失敗しました。次回の同期で再試行します: {}", error.getMessage());
+                } else {
+                    apply(result);
+                }
+                return null;
+            });
+        currentCycle = cycle.whenComplete((ignored, error) -> {
+            running.set(false);
+            if (rerun.getAndSet(false)) {
+                runCycle();
+            }
+        });
+    }
+
+    // 起動時：有効なBAN（論理削除済みを含む）をまとめて読み込む
+    private CycleResult load(Connection conn) throws SQLException {
+        long now = System.currentTimeMillis();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(CREATE_TABLE);
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(PURGE)) {
+            stmt.setLong(1, now - PURGE_AFTER_MILLIS);
+            stmt.executeUpdate();
+        }
+        Timestamp dbNow = queryNow(conn);
+        List<Row> rows = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(LOAD_ACTIVE)) {
+            stmt.setLong(1, now);
+            readRows(stmt, rows);
+        }
+        Set<UUID> loadedIds = new HashSet<>();
+        for (Row row : rows) {
+            loadedIds.add(row.uuid());
+        }
+        // ローカルの変更は読み込んだ行を反映した後に書き込むため、ここでは書き込まない
+        return new CycleResult(Map.of(), rows, loadedIds, dbNow);
+    }
+
+    // 通常時：書き込み待ちの変更を書き込み、ウォーターマーク以降の変更を読み込む
+    private CycleResult sync(Connection conn, Map<UUID, Change> toWrite, Timestamp since) throws SQLException {
+        write(conn, toWrite);
+        List<Row> rows = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(LOAD_CHANGES)) {
+            stmt.setTimestamp(1, new Timestamp(since.getTime() - WATERMARK_OVERLAP_MILLIS));
+            readRows(stmt, rows);
+        }
+        Timestamp next = since;
+        for (Row row : rows) {
+            if (row.updatedAt().after(next)) {
+                next = row.updatedAt();
+            }
+        }
+        return new CycleResult(toWrite, rows, null, next);
+    }
+
+    private void write(Connection conn, Map<UUID, Change> toWrite) throws SQLException {
+        if (toWrite.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement upsert = conn.prepareStatement(UPSERT);
+             PreparedStatement softDelete = conn.prepareStatement(SOFT_DELETE)) {
+            boolean hasUpserts = false;
+            boolean hasDeletes = false;
+            for (Map.Entry<UUID, Change> entry : toWrite.entrySet()) {
+                BanInfo info = entry.getValue().info();
+                if (info != null) {
+                    upsert.setString(1, entry.getKey().toString());
+                    upsert.setString(2, info.username != null ? info.username : "Unknown");
+                    upsert.setString(3, info.reason.name());
+                    upsert.setLong(4, info.unbanTime);
+                    upsert.addBatch();
+                    hasUpserts = true;
+                } else {
+                    softDelete.setString(1, entry.getKey().toString());
+                    softDelete.addBatch();
+                    hasDeletes = true;
+                }
+            }
+            if (hasUpserts) {
+                upsert.executeBatch();
+            }
+            if (hasDeletes) {
+                softDelete.executeBatch();
+            }
+        }
+    }
+
+    private Timestamp queryNow(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(NOW)) {
+            rs.next();
+            return rs.getTimestamp(1);
+        }
+    }
+
+    private void readRows(PreparedStatement stmt, List<Row> rows) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                String uuid = rs.getString("uuid");
+                String reason = rs.getString("reason");
+                try {
+                    BanInfo info = new BanInfo(rs.getLong("unban_time"), BanInfo.Reason.valueOf(reason), rs.getString("username"));
+                    rows.add(new Row(UUID.fromString(uuid), info, rs.getBoolean("deleted"), rs.getTimestamp("updated_at")));
+                } catch (IllegalArgumentException e) {
+                    logger.warn("bans テーブルの不正な行をスキップしました (uuid={}, reason={})", uuid, reason);
+                }
+            }
+        }
+    }
+
+    private void apply(CycleResult result) {
+        // 書き込んだ変更を取り除く（書き込み中に上書きされた変更は残し、次回書き込む）
+        result.written().forEach((uuid, change) -> {
+            if (pending.remove(uuid, change) && change.info() == null) {
+                journal.markSynced(uuid);
+            }
+        });
+        writtenCount.addAndGet(result.written().size());
+
+        long now = System.currentTimeMillis();
+        for (Row row : result.rows()) {
+            if (closing) {
+                break;
+            }
+            // 書き込み待ちのローカルの変更の方が新しい
+            if (pending.containsKey(row.uuid())) {
+                continue;
+            }
+            BanInfo current = banMap.get(row.uuid());
+            if (row.deleted()) {
+                if (current != null) {
+                    listener.onRemoteUnban(row.uuid());
+                    appliedCount.incrementAndGet();
+                }
+            } else if (row.info().unbanTime > now && !sameBan(current, row.info())) {
+                listener.onRemoteBan(row.uuid(), row.info());
+                appliedCount.incrementAndGet();
+            }
+        }
+
+        if (result.loadedIds() != null) {
+            // DBに無いローカルのBAN（MySQL導入前や接続できなかった間のもの）を書き込む
+            int uploads = 0;
+            for (Map.Entry<UUID, BanInfo> entry : banMap.entrySet()) {
+                if (!result.loadedIds().contains(entry.getKey()) && entry.getValue().unbanTime > now) {
+                    pending.putIfAbsent(entry.getKey(), new Change(entry.getValue()));
+                    uploads++;
+                }
+            }
+            logger.info("MySQLからBANデータを読み込みました ({}件, 書き込み対象のローカルBAN: {}件)", result.rows().size(), uploads);
+            if (!pending.isEmpty()) {
+                rerun.set(true);
+            }
+        }
+        watermark = result.watermark();
+    }
+
+    private static boolean sameBan(BanInfo current, BanInfo remote) {
+        return current != null && current.unbanTime == remote.unbanTime && current.reason == remote.reason;
+    }
+}
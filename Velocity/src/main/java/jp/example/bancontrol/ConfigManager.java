@@ -12,7 +12,7 @@ public class ConfigManager {
 
     private final Path dataDirectory;
     private final Logger logger;
-    private Toml config;
+    private volatile Toml config;
 
     public ConfigManager(Path dataDirectory, Logger logger) {
         this.dataDirectory = dataDirectory;
@@ -20,8 +20,34 @@ public class ConfigManager {
         loadConfig();
     }
 
+    public Path getConfigFile() {
+        return dataDirectory.resolve("config.toml");
+    }
+
+    /**
+     * config.toml を読み直す。読み込みに失敗した場合は現在の設定を維持する。
+     *
+     * @return 読み直した場合は true
+     */
+    public boolean reload() {
+        try {
+            config = new Toml().read(getConfigFile().toFile());
+            return true;
+        } catch (Exception e) {
+            logger.error("config.tomlの再読み込みに失敗しました。現在の設定を維持します。", e);
+            return false;
+        }
+    }
+
+    /**
+     * 現在の設定からスナップショットを作る
+     */
+    public Settings snapshot() {
+        return new Settings(this);
+    }
+
     private void loadConfig() {
-        Path configFile = dataDirectory.resolve("config.toml");
+        Path configFile = getConfigFile();
         if (!Files.exists(configFile)) {
             logger.info("config.tomlが見つかりません。デフォルト設定で起動します。");
             try (InputStream in = getClass().getResourceAsStream("/config.toml")) {
@@ -0,0 +1,98 @@
+package jp.example.bancontrol;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * config.toml の変更監視
+ * 専用スレッドでデータフォルダを監視し、config.toml が書き換えられたら少し待ってから onChange を実行する
+ * （エディタの保存で連続して届く変更通知は1回の再読み込みにまとめる）。
+ */
+public class ConfigWatcher {
+
+    private static final long DEBOUNCE_MILLIS = 500L;
+
+    private final Path dataDirectory;
+    private final Path fileName;
+    private final Logger logger;
+    private final ScheduledExecutorService scheduler;
+    private final Runnable onChange;
+    private final AtomicBoolean reloadScheduled = new AtomicBoolean(false);
+    private WatchService watchService;
+    private Thread thread;
+
+    public ConfigWatcher(Path configFile, Logger logger, ScheduledExecutorService scheduler, Runnable onChange) {
+        this.dataDirectory = configFile.getParent();
+        this.fileName = configFile.getFileName();
+        this.logger = logger;
+        this.scheduler = scheduler;
+        this.onChange = onChange;
+    }
+
+    public void start() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            dataDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            logger.warn("config.tomlの変更監視を開始できませんでした。/bancontrol reload で再読み込みしてください。", e);
+            return;
+        }
+        thread = new Thread(this::watch, "BanControl-ConfigWatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void close() {
+        if (watchService == null) return;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.warn("config.tomlの変更監視の停止に失敗しました: {}", e.getMessage());
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (fileName.equals(event.context())) {
+                        scheduleReload();
+                    }
+                }
+                if (!key.reset()) {
+                    logger.warn("データフォルダを監視できなくなったため、config.tomlの変更監視を終了します。");
+                    return;
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // 停止
+        }
+    }
+
+    private void scheduleReload() {
+        if (!reloadScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            scheduler.schedule(() -> {
+                reloadScheduled.set(false);
+                onChange.run();
+            }, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            reloadScheduled.set(false);
+        }
+    }
+}
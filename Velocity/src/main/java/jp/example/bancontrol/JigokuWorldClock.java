@@ -0,0 +1,131 @@
+package jp.example.bancontrol;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 地獄ワールドの時計モデル
+ * (ゲーム内時刻, 実時間) のサンプルから実測のティックレート（TPS低下を含む）を追跡し、
+ * 任意の時点のワールド時刻をハートビート無しで推定する。
+ */
+public class JigokuWorldClock {
+
+    private static final long DAY_TIME = 24000L;
+    private static final double NOMINAL_TICKS_PER_SECOND = 20.0;
+    private static final double MAX_TICKS_PER_SECOND = 25.0; // これを超える進みは /time set 等による時刻変更とみなす
+    private static final double RATE_SMOOTHING = 0.3;
+    private static final long MIN_RATE_SAMPLE_GAP_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_RATE_SAMPLE_GAP_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final long nightStart;
+    private final long nightEnd;
+    private volatile Anchor anchor;
+    private volatile long lastObservedNanos;
+
+    public JigokuWorldClock(long nightStart, long nightEnd) {
+        this.nightStart = nightStart;
+        this.nightEnd = nightEnd;
+    }
+
+    /**
+     * 現在観測したワールド時刻を記録する
+     */
+    public void observe(long gameTime) {
+        observe(gameTime, System.nanoTime());
+    }
+
+    /**
+     * 指定した実時間（System.nanoTime基準）に観測されたワールド時刻を記録する
+     */
+    public synchronized void observe(long gameTime, long sampleNanos) {
+        long time = Math.floorMod(gameTime, DAY_TIME);
+        Anchor previous = anchor;
+        double rate = NOMINAL_TICKS_PER_SECOND;
+        if (previous != null) {
+            if (sampleNanos <= previous.sampleNanos) {
+                return; // 既に取り込んだサンプルより古い
+            }
+            rate = previous.ticksPerSecond;
+            long elapsedNanos = sampleNanos - previous.sampleNanos;
+            if (previous.exact && elapsedNanos >= MIN_RATE_SAMPLE_GAP_NANOS && elapsedNanos <= MAX_RATE_SAMPLE_GAP_NANOS) {
+                long elapsedTicks = Math.floorMod(time - previous.time, DAY_TIME);
+                double measured = elapsedTicks / (elapsedNanos / 1_000_000_000.0);
+                if (measured <= MAX_TICKS_PER_SECOND) {
+                    rate += RATE_SMOOTHING * (measured - rate);
+                }
+            }
+        }
+        anchor = new Anchor(time, sampleNanos, rate, true);
+        lastObservedNanos = sampleNanos;
+    }
+
+    /**
+     * 昼夜切り替え通知を記録する
+     * 切り替えは検出間隔分の誤差を含むため、推定と食い違う場合のみ境界時刻へ補正する。
+     */
+    public synchronized void observeTransition(boolean night) {
+        long now = System.nanoTime();
+        Anchor current = anchor;
+        lastObservedNanos = now;
+        if (current != null && isNightTime(project(current, now)) == night) {
+            return;
+        }
+        double rate = current != null ? current.ticksPerSecond : NOMINAL_TICKS_PER_SECOND;
+        anchor = new Anchor(night ? nightStart : nightEnd, now, rate, false);
+    }
+
+    public boolean hasSample() {
+        return anchor != null;
+    }
+
+    /**
+     * 現在のワールド時刻の推定値（0-23999）。サンプルが無い場合は -1
+     */
+    public long currentTime() {
+        Anchor current = anchor;
+        return current == null ? -1L : project(current, System.nanoTime());
+    }
+
+    public boolean isNight() {
+        Anchor current = anchor;
+        return current != null && isNightTime(project(current, System.nanoTime()));
+    }
+
+    /**
+     * 実測ティックレート（ティック/秒）
+     */
+    public double getTicksPerSecond() {
+        Anchor current = anchor;
+        return current == null ? NOMINAL_TICKS_PER_SECOND : current.ticksPerSecond;
+    }
+
+    /**
+     * 最後の観測からの経過時間（ミリ秒）。サンプルが無い場合は -1
+     */
+    public long getSampleAgeMillis() {
+        return anchor == null ? -1L : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastObservedNanos);
+    }
+
+    private boolean isNightTime(long time) {
+        return time >= nightStart && time < nightEnd;
+    }
+
+    private static long project(Anchor anchor, long nowNanos) {
+        double elapsedSeconds = (nowNanos - anchor.sampleNanos) / 1_000_000_000.0;
+        long elapsedTicks = (long) (elapsedSeconds * anchor.ticksPerSecond);
+        return Math.floorMod(anchor.time + elapsedTicks, DAY_TIME);
+    }
+
+    private static final class Anchor {
+        final long time;
+        final long sampleNanos;
+        final double ticksPerSecond;
+        final boolean exact; // 実測サンプルの場合 true（ティックレート算出に使用可能）
+
+        Anchor(long time, long sampleNanos, double ticksPerSecond, boolean exact) {
+            this.time = time;
+            this.sampleNanos = sampleNanos;
+            this.ticksPerSecond = ticksPerSecond;
+            this.exact = exact;
+        }
+    }
+}
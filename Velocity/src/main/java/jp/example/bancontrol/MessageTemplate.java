@@ -0,0 +1,82 @@
+package jp.example.bancontrol;
+
+import net.kyori.adventure.text.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {name} 形式のプレースホルダーを含むメッセージテンプレート
+ * 読み込み時に固定部分とプレースホルダーに分解しておき、送信時は値を順に埋めるだけにする。
+ * プレースホルダーを含まないテンプレートは Component を1つだけ作って使い回す。
+ */
+public final class MessageTemplate {
+
+    private final String[] literals;   // placeholders.length + 1 個の固定部分
+    private final int[] placeholders;  // render に渡す引数の位置
+    private final int estimatedLength;
+    private final Component constant;
+
+    private MessageTemplate(String[] literals, int[] placeholders) {
+        this.literals = literals;
+        this.placeholders = placeholders;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.estimatedLength = length + placeholders.length * 8;
+        this.constant = placeholders.length == 0 ? Component.text(literals[0]) : null;
+    }
+
+    /**
+     * テンプレートを分解する
+     *
+     * @param parameters render に渡す値の名前（この順で値を渡す）。含まれない {name} はそのまま残る
+     */
+    public static MessageTemplate parse(String template, String... parameters) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> placeholders = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < template.length()) {
+            char c = template.charAt(i);
+            int close = c == '{' ? template.indexOf('}', i + 1) : -1;
+            int index = close > 0 ? indexOf(parameters, template.substring(i + 1, close)) : -1;
+            if (index < 0) {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            literals.add(literal.toString());
+            literal.setLength(0);
+            placeholders.add(index);
+            i = close + 1;
+        }
+        literals.add(literal.toString());
+        return new MessageTemplate(literals.toArray(new String[0]), placeholders.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * 値を埋めた Component を返す（プレースホルダーが無ければ共有の Component）
+     */
+    public Component render(Object... values) {
+        if (constant != null) {
+            return constant;
+        }
+        StringBuilder builder = new StringBuilder(estimatedLength);
+        for (int i = 0; i < placeholders.length; i++) {
+            builder.append(literals[i]).append(values[placeholders[i]]);
+        }
+        builder.append(literals[placeholders.length]);
+        return Component.text(builder.toString());
+    }
+
+    private static int indexOf(String[] parameters, String name) {
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
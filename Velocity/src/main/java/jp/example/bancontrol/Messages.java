@@ -0,0 +1,87 @@
+package jp.example.bancontrol;
+
+import net.kyori.adventure.text.Component;
+
+/**
+ * プレイヤー向けメッセージの描画キャッシュ
+ * 固定メッセージは Component を1つだけ作って全員で共有し、設定ファイルのメッセージは読み込み時に
+ * テンプレートへ分解しておく。設定を読み直す場合は新しいインスタンスに置き換える。
+ */
+public final class Messages {
+
+    // 固定メッセージ
+    public static final Component JIGOKU_NIGHT_DENIED = Component.text("§c夜の地獄は危険すぎるため、移動できません。");
+    public static final Component ADMIN_JIGOKU_TRANSFERRED = Component.text("§a[管理者] 地獄サーバーへ強制転送しました。");
+    public static final Component ADMIN_GENSE_TRANSFERRED = Component.text("§a[管理者] 現世サーバーへ強制転送しました。");
+    public static final Component UNBAN_USAGE = Component.text("/unban <player>");
+    public static final Component UNBAN_PLAYER_NOT_FOUND = Component.text("そのプレイヤーは見つかりません。");
+    public static final Component BANCONTROL_USAGE = Component.text("/bancontrol <reload|stats>");
+    public static final Component CONFIG_RELOADED = Component.text("§aconfig.tomlを再読み込みしました。");
+    public static final Component CONFIG_RELOAD_FAILED = Component.text("§cconfig.tomlの再読み込みに失敗しました。ログを確認してください。");
+
+    private static final MessageTemplate SERVER_NOT_FOUND = MessageTemplate.parse("§c転送先のサーバーが見つかりません: {server}", "server");
+    private static final MessageTemplate UNBANNED = MessageTemplate.parse("{player} のBANを解除しました。", "player");
+    private static final MessageTemplate NOT_BANNED = MessageTemplate.parse("{player} はBANされていません。", "player");
+    private static final MessageTemplate NIGHT_LOGOUT_BAN_REMAINING = MessageTemplate.parse("§c夜間ログアウトペナルティ中です。残り時間: {time}", "time");
+    private static final MessageTemplate DEATH_BAN_REMAINING = MessageTemplate.parse("§c死亡ペナルティ中です。残り時間: {time}", "time");
+    private static final MessageTemplate BAN_REMAINING = MessageTemplate.parse("§cペナルティ中です。残り時間: {time}", "time");
+    private static final MessageTemplate NIGHT_LOGOUT_PENALTY = MessageTemplate.parse(
+        "§e{player} が夜の地獄から逃げ出したため、{minutes}分間のペナルティが課されました。", "player", "minutes");
+
+    // 設定ファイルのメッセージ
+    private final Component jigokuNightAnnouncement;
+    private final Component jigokuDayAnnouncement;
+
+    public Messages(ConfigManager config) {
+        this.jigokuNightAnnouncement = Component.text(config.getString("jigoku_night_message",
+            "何処かから地鳴りが聞こえる…（地獄ワールドが夜になりました）"));
+        this.jigokuDayAnnouncement = Component.text(config.getString("jigoku_day_message",
+            "地獄ワールドの夜は明けました。今なら安全に移動できます！"));
+    }
+
+    public Component jigokuNightAnnouncement() {
+        return jigokuNightAnnouncement;
+    }
+
+    public Component jigokuDayAnnouncement() {
+        return jigokuDayAnnouncement;
+    }
+
+    public Component serverNotFound(String serverName) {
+        return SERVER_NOT_FOUND.render(serverName);
+    }
+
+    public Component unbanned(String playerName) {
+        return UNBANNED.render(playerName);
+    }
+
+    public Component notBanned(String playerName) {
+        return NOT_BANNED.render(playerName);
+    }
+
+    public Component banRemaining(BanInfo.Reason reason, long remainingSeconds) {
+        String time = formatRemaining(remainingSeconds);
+        switch (reason) {
+            case NIGHT_LOGOUT:
+                return NIGHT_LOGOUT_BAN_REMAINING.render(time);
+            case DEATH:
+                return DEATH_BAN_REMAINING.render(time);
+            default:
+                return BAN_REMAINING.render(time);
+        }
+    }
+
+    public Component nightLogoutPenalty(String playerName, long minutes) {
+        return NIGHT_LOGOUT_PENALTY.render(playerName, minutes);
+    }
+
+    private static String formatRemaining(long remainingSeconds) {
+        long minutes = remainingSeconds / 60;
+        long seconds = remainingSeconds % 60;
+        StringBuilder builder = new StringBuilder(12);
+        if (minutes > 0) {
+            builder.append(minutes).append('分');
+        }
+        return builder.append(seconds).append('秒').toString();
+    }
+}
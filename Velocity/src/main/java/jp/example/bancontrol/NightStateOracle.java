@@ -0,0 +1,39 @@
+package jp.example.bancontrol;
+
+/**
+ * 地獄ワールドの昼夜状態をメモリ上で判定するクラス
+ * MySQLポーリングや time_state / heartbeat_response の受信で更新される時計モデルから推定し、
+ * 転送判定ではDBに触れずに即座に参照できる。
+ */
+public class NightStateOracle {
+
+    private final JigokuWorldClock clock;
+    private final long maxAgeMillis;
+
+    public NightStateOracle(JigokuWorldClock clock, long maxAgeMillis) {
+        this.clock = clock;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * 現在の昼夜状態の推定値（未観測の場合は昼扱い）
+     */
+    public boolean isNight() {
+        return clock.isNight();
+    }
+
+    /**
+     * 観測値が無い、または許容時間より古い場合に true
+     */
+    public boolean isStale() {
+        long age = clock.getSampleAgeMillis();
+        return age < 0 || age > maxAgeMillis;
+    }
+
+    /**
+     * 最後の観測からの経過時間（ミリ秒）。未観測の場合は -1
+     */
+    public long getAgeMillis() {
+        return clock.getSampleAgeMillis();
+    }
+}
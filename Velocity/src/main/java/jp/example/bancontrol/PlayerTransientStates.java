@@ -0,0 +1,105 @@
+package jp.example.bancontrol;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * プレイヤーごとの一時フラグ（死亡フラグ・管理者転送フラグ）の表
+ * 状態は不変の PlayerTransientState として保持し、ConcurrentHashMap の
+ * putIfAbsent / replace / remove による比較交換で更新するため、ロックを取らずに
+ * 「確認して消費する」を1回の操作で行える。
+ * 各フラグは有効期限を持ち、期限を過ぎたフラグは削除されるまで無効な記録（tombstone）として扱う。
+ */
+public class PlayerTransientStates {
+
+    /** 期限なし（消費されるまで有効） */
+    public static final long NO_EXPIRY = Long.MAX_VALUE;
+
+    public enum Flag { DEATH, ADMIN_TRANSFER }
+
+    // 各フラグの有効期限（0 = 未設定）
+    private record PlayerTransientState(long deathUntil, long adminTransferUntil) {
+
+        long until(Flag flag) {
+            return flag == Flag.DEATH ? deathUntil : adminTransferUntil;
+        }
+
+        PlayerTransientState with(Flag flag, long until) {
+            return flag == Flag.DEATH
+                ? new PlayerTransientState(until, adminTransferUntil)
+                : new PlayerTransientState(deathUntil, until);
+        }
+
+        boolean isEmpty() {
+            return deathUntil == 0 && adminTransferUntil == 0;
+        }
+    }
+
+    private final Map<UUID, PlayerTransientState> states = new ConcurrentHashMap<>();
+
+    /**
+     * フラグを立てる（既に立っている場合は有効期限を上書きする）
+     */
+    public void set(UUID uuid, Flag flag, long expiresAt) {
+        while (true) {
+            PlayerTransientState current = states.get(uuid);
+            PlayerTransientState base = current != null ? current : new PlayerTransientState(0, 0);
+            if (compareAndSet(uuid, current, base.with(flag, expiresAt))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 有効なフラグが立っていれば取り除いて true を返す（期限切れのフラグは取り除くだけ）
+     */
+    public boolean consume(UUID uuid, Flag flag, long now) {
+        while (true) {
+            PlayerTransientState current = states.get(uuid);
+            if (current == null) {
+                return false;
+            }
+            long until = current.until(flag);
+            if (until == 0) {
+                return false;
+            }
+            if (compareAndSet(uuid, current, current.with(flag, 0))) {
+                return until > now;
+            }
+        }
+    }
+
+    /**
+     * 期限切れのフラグを取り除く（期限が延長されていた場合は何もしない）
+     */
+    public void expire(UUID uuid, Flag flag, long now) {
+        while (true) {
+            PlayerTransientState current = states.get(uuid);
+            if (current == null) {
+                return;
+            }
+            long until = current.until(flag);
+            if (until == 0 || until > now) {
+                return;
+            }
+            if (compareAndSet(uuid, current, current.with(flag, 0))) {
+                return;
+            }
+        }
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    private boolean compareAndSet(UUID uuid, PlayerTransientState expected, PlayerTransientState next) {
+        if (expected == null) {
+            return states.putIfAbsent(uuid, next) == null;
+        }
+        if (next.isEmpty()) {
+            return states.remove(uuid, expected);
+        }
+        return states.replace(uuid, expected, next);
+    }
+}
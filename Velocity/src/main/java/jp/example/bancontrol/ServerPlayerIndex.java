@@ -0,0 +1,79 @@
+package jp.example.bancontrol;
+
+import com.velocitypowered.api.proxy.Player;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * サーバー名から接続中のプレイヤーを引く索引
+ * ServerPostConnectEvent / DisconnectEvent で差分更新し、送信経路の選択やサーバー単位のブロードキャストで
+ * 全プレイヤーを走査しないようにする。更新は同期化し、参照はロック無しで行う。
+ */
+public class ServerPlayerIndex {
+
+    private final Map<String, Set<Player>> playersByServer = new ConcurrentHashMap<>();
+    private final Map<UUID, String> serverByPlayer = new ConcurrentHashMap<>();
+
+    /**
+     * プレイヤーがサーバーに接続した（移動元のサーバーからは取り除く）
+     */
+    public synchronized void connected(Player player, String serverName) {
+        String previous = serverByPlayer.put(player.getUniqueId(), serverName);
+        if (previous != null && !previous.equals(serverName)) {
+            removeFrom(previous, player);
+        }
+        playersByServer.computeIfAbsent(serverName, name -> ConcurrentHashMap.newKeySet()).add(player);
+    }
+
+    public synchronized void disconnected(Player player) {
+        String previous = serverByPlayer.remove(player.getUniqueId());
+        if (previous != null) {
+            removeFrom(previous, player);
+        }
+    }
+
+    /**
+     * 索引を作り直す（起動時に既に接続しているプレイヤーを取り込む）
+     */
+    public synchronized void rebuild(Collection<Player> players) {
+        playersByServer.clear();
+        serverByPlayer.clear();
+        for (Player player : players) {
+            player.getCurrentServer().ifPresent(connection -> connected(player, connection.getServerInfo().getName()));
+        }
+    }
+
+    /**
+     * サーバーに接続中のプレイヤーを1人返す（プラグインメッセージの送信経路用）
+     */
+    public Optional<Player> anyPlayer(String serverName) {
+        Set<Player> players = playersByServer.get(serverName);
+        if (players == null) {
+            return Optional.empty();
+        }
+        Iterator<Player> it = players.iterator();
+        return it.hasNext() ? Optional.of(it.next()) : Optional.empty();
+    }
+
+    /**
+     * サーバーに接続中のプレイヤー（読み取り専用のビュー）
+     */
+    public Collection<Player> players(String serverName) {
+        Set<Player> players = playersByServer.get(serverName);
+        return players != null ? Collections.unmodifiableSet(players) : Collections.emptySet();
+    }
+
+    private void removeFrom(String serverName, Player player) {
+        Set<Player> players = playersByServer.get(serverName);
+        if (players != null) {
+            players.remove(player);
+        }
+    }
+}
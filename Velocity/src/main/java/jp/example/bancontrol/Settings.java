@@ -0,0 +1,47 @@
+package jp.example.bancontrol;
+
+/**
+ * config.toml の設定のスナップショット
+ * 読み込み時に型変換と既定値の解決を済ませた不変オブジェクトで、参照側はフィールドを読むだけにする。
+ * 再読み込み時は新しいインスタンスを作って丸ごと置き換える。
+ */
+public final class Settings {
+
+    public final boolean debug;
+    public final String jigokuServerName;
+    public final String genseServerName;
+    public final long nightLogoutBanMillis;
+    public final long batchWindowMillis;
+    public final long requestTimeoutMillis;
+    public final Messages messages;
+
+    // 以下は起動時にのみ参照する（変更は再起動後に反映）
+    public final boolean pushTimeReplication;
+    public final long nightStateMaxAgeMillis;
+    public final int mysqlPollIntervalSeconds;
+    public final int banSyncIntervalSeconds;
+
+    public Settings(ConfigManager config) {
+        this.debug = config.getBoolean("debug", false);
+        this.jigokuServerName = config.getString("jigoku_server_name", "jigoku");
+        this.genseServerName = config.getString("gense_server_name", "gense");
+        this.nightLogoutBanMillis = config.getInt("ban_after_night_logout_minutes", 10) * 60_000L;
+        this.batchWindowMillis = Math.max(0L, config.getInt("batch_window_millis", 50));
+        this.requestTimeoutMillis = Math.max(100L, config.getInt("request_timeout_millis", 2000));
+        this.messages = new Messages(config);
+        this.pushTimeReplication = "push".equalsIgnoreCase(config.getString("time_replication", "push"));
+        this.nightStateMaxAgeMillis = config.getInt("night_state_max_age_seconds", 90) * 1000L;
+        this.mysqlPollIntervalSeconds = Math.max(1, config.getInt("mysql_poll_interval_seconds", 30));
+        this.banSyncIntervalSeconds = Math.max(1, config.getInt("ban_sync_interval_seconds", 5));
+    }
+
+    /**
+     * 再起動しないと反映されない設定が previous から変わっているか
+     */
+    public boolean requiresRestartSince(Settings previous) {
+        return pushTimeReplication != previous.pushTimeReplication
+            || nightStateMaxAgeMillis != previous.nightStateMaxAgeMillis
+            || mysqlPollIntervalSeconds != previous.mysqlPollIntervalSeconds
+            || banSyncIntervalSeconds != previous.banSyncIntervalSeconds;
+    }
+}
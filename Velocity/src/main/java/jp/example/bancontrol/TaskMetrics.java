@@ -0,0 +1,82 @@
+package jp.example.bancontrol;
+
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * タイマー処理の種類ごとの実行統計（/bancontrol stats で表示）
+ * 実行回数・失敗回数と、実行時間の平均と最大を記録する。
+ * 記録はロックを取らないため、どのスレッドから呼び出してもよい。
+ */
+public class TaskMetrics {
+
+    private final Logger logger;
+    private final Map<String, Stat> stats = new ConcurrentHashMap<>();
+
+    public TaskMetrics(Logger logger) {
+        this.logger = logger;
+    }
+
+    private static final class Stat {
+        final LongAdder count = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder runNanos = new LongAdder();
+        final LongAccumulator maxRunNanos = new LongAccumulator(Math::max, 0L);
+    }
+
+    /**
+     * 実行時間を記録するようにタスクを包む（例外は記録してログに出し、呼び出し元へは投げない）
+     */
+    public Runnable wrap(String name, Runnable task) {
+        Stat stat = stat(name);
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                stat.failures.increment();
+                logger.error("タイマー処理 {} でエラーが発生しました。", name, e);
+            } finally {
+                long run = System.nanoTime() - start;
+                stat.count.increment();
+                stat.runNanos.add(run);
+                stat.maxRunNanos.accumulate(run);
+            }
+        };
+    }
+
+    /**
+     * 処理の種類ごとに1行ずつ、名前順で統計を返す
+     */
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        new TreeMap<>(stats).forEach((name, stat) -> {
+            long count = stat.count.sum();
+            lines.add(String.format("%s: 実行%d回 平均%.1fms 最大%.1fms / 失敗%d",
+                name, count,
+                average(stat.runNanos.sum(), count), millis(stat.maxRunNanos.get()),
+                stat.failures.sum()));
+        });
+        return lines;
+    }
+
+    private Stat stat(String name) {
+        return stats.computeIfAbsent(name, key -> new Stat());
+    }
+
+    private static double average(long totalNanos, long count) {
+        return count == 0 ? 0.0 : millis(totalNanos) / count;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
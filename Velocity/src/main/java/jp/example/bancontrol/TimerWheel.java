@@ -0,0 +1,158 @@
+package jp.example.bancontrol;
+
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 期限付きエントリーの失効を管理するハッシュ化タイマーホイール
+ * 期限を tick 単位のスロットに振り分け、1つの定期タスクが現在のスロットだけを処理する
+ * （エントリーごとの ScheduledFuture や、全件走査は行わない）。
+ * スロット数を超える先の期限は周回数で表し、スロットを通過するたびに1ずつ減らす。
+ * 同じキーで登録し直すと以前の登録は取り消される。どのスレッドからでも呼び出せる。
+ *
+ * @param <K> エントリーのキー
+ */
+public class TimerWheel<K> {
+
+    private static final class Entry<K> {
+        final K key;
+        final Runnable task;
+        final int slot;
+        long rounds;
+        Entry<K> prev;
+        Entry<K> next;
+
+        Entry(K key, Runnable task, int slot, long rounds) {
+            this.key = key;
+            this.task = task;
+            this.slot = slot;
+            this.rounds = rounds;
+        }
+    }
+
+    private final long tickMillis;
+    private final int mask;
+    private final Entry<K>[] slots;
+    private final Map<K, Entry<K>> entries = new HashMap<>();
+    private final long originMillis;
+    private final Logger logger;
+    private long currentTick = 0;
+    private ScheduledFuture<?> task;
+
+    /**
+     * @param tickMillis 1スロットの時間幅（失効の精度）
+     * @param slotCount  スロット数（2の累乗に切り上げる）
+     */
+    @SuppressWarnings("unchecked")
+    public TimerWheel(long tickMillis, int slotCount, Logger logger) {
+        this.tickMillis = Math.max(1L, tickMillis);
+        int size = Integer.highestOneBit(Math.max(2, slotCount) - 1) << 1;
+        this.mask = size - 1;
+        this.slots = (Entry<K>[]) new Entry[size];
+        this.originMillis = System.currentTimeMillis();
+        this.logger = logger;
+    }
+
+    public void start(ScheduledExecutorService scheduler) {
+        task = scheduler.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * deadlineMillis（System.currentTimeMillis 基準）に task を実行する
+     */
+    public synchronized void schedule(K key, long deadlineMillis, Runnable task) {
+        unlink(entries.remove(key));
+        long targetTick = Math.max(currentTick + 1, ceilDiv(deadlineMillis - originMillis, tickMillis));
+        long ticksAhead = targetTick - currentTick;
+        Entry<K> entry = new Entry<>(key, task, (int) (targetTick & mask), (ticksAhead - 1) / slots.length);
+        link(entry);
+        entries.put(key, entry);
+    }
+
+    /**
+     * 登録を取り消す
+     *
+     * @return 未失効の登録があった場合は true
+     */
+    public synchronized boolean cancel(K key) {
+        Entry<K> entry = entries.remove(key);
+        unlink(entry);
+        return entry != null;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // 経過した tick のスロットを順に処理し、失効したタスクはロックの外で実行する
+    void tick() {
+        List<Runnable> expired = new ArrayList<>();
+        synchronized (this) {
+            long nowTick = (System.currentTimeMillis() - originMillis) / tickMillis;
+            while (currentTick < nowTick) {
+                currentTick++;
+                Entry<K> entry = slots[(int) (currentTick & mask)];
+                while (entry != null) {
+                    Entry<K> next = entry.next;
+                    if (entry.rounds == 0) {
+                        unlink(entry);
+                        entries.remove(entry.key);
+                        expired.add(entry.task);
+                    } else {
+                        entry.rounds--;
+                    }
+                    entry = next;
+                }
+            }
+        }
+        for (Runnable runnable : expired) {
+            try {
+                runnable.run();
+            } catch (Exception e) {
+                logger.error("期限切れ処理でエラーが発生しました。", e);
+            }
+        }
+    }
+
+    private void link(Entry<K> entry) {
+        Entry<K> head = slots[entry.slot];
+        entry.next = head;
+        if (head != null) {
+            head.prev = entry;
+        }
+        slots[entry.slot] = entry;
+    }
+
+    private void unlink(Entry<K> entry) {
+        if (entry == null) {
+            return;
+        }
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else if (slots[entry.slot] == entry) {
+            slots[entry.slot] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return value <= 0 ? 0 : (value + divisor - 1) / divisor;
+    }
+}